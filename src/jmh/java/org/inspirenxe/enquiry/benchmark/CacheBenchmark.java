@@ -0,0 +1,97 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.benchmark;
+
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.inspirenxe.enquiry.cache.QueryNormalizer;
+import org.inspirenxe.enquiry.cache.ResultCache;
+import org.inspirenxe.enquiry.cache.SearchCoalescer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up queries in the {@link ResultCache} and passes searches through the {@link SearchCoalescer} from several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class CacheBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    private final String[] queries = new String[QUERIES];
+    private final ResultCache cache = new ResultCache(true, 300, QUERIES, 0);
+    private final SearchCoalescer coalescer = new SearchCoalescer();
+    private SearchResponse response;
+
+    @Setup
+    public void setup() {
+        final SearchResults.Builder results = SearchResults.builder(10);
+        for (int i = 0; i < 10; i++) {
+            results.add("Result " + i, "The description of result " + i, "https://example.com/" + i);
+        }
+        this.response = new SearchResponse(null, results.build());
+        for (int i = 0; i < QUERIES; i++) {
+            this.queries[i] = "  Sponge   Plugin Query " + i;
+            this.cache.put(ResultCache.key(QueryNormalizer.DEFAULT.normalize(this.queries[i]), 1), this.response);
+        }
+    }
+
+    @Benchmark
+    public String key() {
+        return ResultCache.key(QueryNormalizer.DEFAULT.normalize(this.query()), 1);
+    }
+
+    @Benchmark
+    public SearchResponse hit() {
+        return this.cache.get(this.key());
+    }
+
+    @Benchmark
+    public SearchResponse miss() {
+        return this.cache.get(ResultCache.key(QueryNormalizer.DEFAULT.normalize(this.query()), 2));
+    }
+
+    @Benchmark
+    public CompletableFuture<SearchResponse> coalesce() {
+        return this.coalescer.search(this.key(), () -> CompletableFuture.completedFuture(this.response));
+    }
+
+    private String query() {
+        return this.queries[ThreadLocalRandom.current().nextInt(QUERIES)];
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.benchmark;
+
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.inspirenxe.enquiry.search.LineTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats the lines of ten results with a compiled {@link LineTemplate} and with the chained replacements it replaced.
+ * <p>
+ * Parsing the legacy formatting codes of the lines needs the Sponge implementation and is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LineTemplateBenchmark {
+
+    private static final String ENGINE = "&9G&co&eo&9g&al&ce";
+    private static final String QUERY = "sponge plugin documentation";
+
+    @Param({"&f${resultNumber}. &d${resultTitle}", "&f${resultNumber}. &d${resultTitle} &7(${engine}: ${query})"})
+    public String format;
+
+    private SearchResults results;
+    private LineTemplate template;
+
+    @Setup
+    public void setup() {
+        final SearchResults.Builder results = SearchResults.builder(10);
+        for (int i = 0; i < 10; i++) {
+            results.add("Sponge Documentation - Plugin Development Part " + i,
+                    "Learn how to write plugins for the Sponge API, from setting up a workspace to registering commands and listeners.",
+                    "https://docs.spongepowered.org/en/plugin/part-" + i + ".html");
+        }
+        this.results = results.build();
+        this.template = LineTemplate.compile(this.format);
+    }
+
+    @Benchmark
+    public void template(Blackhole blackhole) {
+        int number = 1;
+        for (SearchResult result : this.results) {
+            blackhole.consume(this.template.format(ENGINE, QUERY, number++, result));
+        }
+    }
+
+    @Benchmark
+    public void replace(Blackhole blackhole) {
+        int number = 1;
+        for (SearchResult result : this.results) {
+            blackhole.consume(this.format
+                    .replace("${resultNumber}", Integer.toString(number++))
+                    .replace("${resultTitle}", result.getTitle())
+                    .replace("${engine}", ENGINE)
+                    .replace("${query}", QUERY)
+                    .trim());
+        }
+    }
+}
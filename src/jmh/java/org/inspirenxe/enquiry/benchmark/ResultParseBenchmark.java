@@ -0,0 +1,225 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.benchmark;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import org.inspirenxe.enquiry.api.engine.JsonResultReader;
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses recorded responses of each engine into its results, streaming as the engines do and binding the whole body to result classes
+ * with Gson as they used to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResultParseBenchmark {
+
+    private static final int LIMIT = 10;
+
+    @Param({"google", "bing", "duckduckgo"})
+    public String engine;
+
+    private byte[] payload;
+    private JsonResultReader reader;
+    private Class<? extends Bound> bound;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream stream = ResultParseBenchmark.class.getResourceAsStream("/payloads/" + this.engine + ".json")) {
+            this.payload = ByteStreams.toByteArray(stream);
+        }
+        // Mirrors the readers of the engines
+        switch (this.engine) {
+            case "google":
+                this.reader = new JsonResultReader("title", "snippet", "link", "items");
+                this.bound = GoogleBound.class;
+                break;
+            case "bing":
+                this.reader = new JsonResultReader("Title", "Description", "Url", "d", "results");
+                this.bound = BingBound.class;
+                break;
+            default:
+                this.reader = new JsonResultReader("Text", null, "FirstURL", "RelatedTopics");
+                this.bound = DuckDuckGoBound.class;
+        }
+    }
+
+    @Benchmark
+    public SearchResults stream() throws IOException {
+        try (Reader body = this.body()) {
+            return this.reader.read(body, LIMIT);
+        }
+    }
+
+    @Benchmark
+    public List<? extends SearchResult> bind() {
+        // The engines read the whole body into a string and bound it before streaming
+        return new Gson().fromJson(new String(this.payload, StandardCharsets.UTF_8), this.bound).results();
+    }
+
+    private Reader body() {
+        return new InputStreamReader(new ByteArrayInputStream(this.payload), StandardCharsets.UTF_8);
+    }
+
+    private interface Bound {
+
+        List<? extends SearchResult> results();
+    }
+
+    private static final class GoogleBound implements Bound {
+
+        @SerializedName("items")
+        private CopyOnWriteArrayList<Result> results;
+
+        @Override
+        public List<? extends SearchResult> results() {
+            return this.results;
+        }
+
+        private static final class Result implements SearchResult {
+
+            @SerializedName("title")
+            private String title;
+            @SerializedName("snippet")
+            private String description;
+            @SerializedName("link")
+            private String url;
+
+            @Override
+            public String getTitle() {
+                return this.title;
+            }
+
+            @Override
+            public String getDescription() {
+                return this.description;
+            }
+
+            @Override
+            public String getUrl() {
+                return this.url;
+            }
+        }
+    }
+
+    private static final class BingBound implements Bound {
+
+        @SerializedName("d")
+        private Data data;
+
+        @Override
+        public List<? extends SearchResult> results() {
+            return this.data.results;
+        }
+
+        private static final class Data {
+
+            @SerializedName("results")
+            private CopyOnWriteArrayList<Result> results;
+        }
+
+        private static final class Result implements SearchResult {
+
+            @SerializedName("Title")
+            private String title;
+            @SerializedName("Description")
+            private String description;
+            @SerializedName("Url")
+            private String url;
+
+            @Override
+            public String getTitle() {
+                return this.title;
+            }
+
+            @Override
+            public String getDescription() {
+                return this.description;
+            }
+
+            @Override
+            public String getUrl() {
+                return this.url;
+            }
+        }
+    }
+
+    private static final class DuckDuckGoBound implements Bound {
+
+        @SerializedName("RelatedTopics")
+        private CopyOnWriteArrayList<Result> results;
+
+        @Override
+        public List<? extends SearchResult> results() {
+            return this.results;
+        }
+
+        private static final class Result implements SearchResult {
+
+            @SerializedName("Text")
+            private String title;
+            private String description;
+            @SerializedName("FirstURL")
+            private String url;
+
+            @Override
+            public String getTitle() {
+                return this.title;
+            }
+
+            @Override
+            public String getDescription() {
+                return this.description;
+            }
+
+            @Override
+            public String getUrl() {
+                return this.url;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.benchmark;
+
+import com.google.common.io.Files;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.inspirenxe.enquiry.Storage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a configuration holding every default alongside nodes that are no longer known and get pruned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageLoadBenchmark {
+
+    @Param({"0", "1000", "10000"})
+    public int staleNodes;
+
+    private File directory;
+    private byte[] contents;
+    private File configuration;
+    private ConfigurationLoader<CommentedConfigurationNode> loader;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDir();
+        this.configuration = new File(this.directory, "enquiry.conf");
+        this.loader = HoconConfigurationLoader.builder().setFile(this.configuration).build();
+        // Write the defaults once, then add the stale nodes a long lived configuration collects
+        new Storage(this.configuration, this.loader).load();
+        final CommentedConfigurationNode root = this.loader.load();
+        for (int i = 0; i < this.staleNodes; i++) {
+            root.getNode("engines", "removed-" + i / 100, "options", "option-" + i % 100).setValue(i);
+        }
+        this.loader.save(root);
+        this.contents = Files.toByteArray(this.configuration);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() throws IOException {
+        Files.write(this.contents, this.configuration);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.configuration.delete();
+        this.directory.delete();
+    }
+
+    @Benchmark
+    public Storage load() throws IOException {
+        return new Storage(this.configuration, this.loader).load();
+    }
+}
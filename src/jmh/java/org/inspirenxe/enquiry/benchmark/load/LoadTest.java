@@ -0,0 +1,315 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.benchmark.load;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.Storage;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+import org.inspirenxe.enquiry.api.http.HttpTransport;
+import org.inspirenxe.enquiry.cache.DiskResultCache;
+import org.inspirenxe.enquiry.engine.BingEngine;
+import org.inspirenxe.enquiry.engine.DuckDuckGoEngine;
+import org.inspirenxe.enquiry.engine.GoogleEngine;
+import org.inspirenxe.enquiry.metrics.Histogram;
+import org.inspirenxe.enquiry.search.PlayerRateLimiter;
+import org.inspirenxe.enquiry.search.SearchExecutor;
+import org.inspirenxe.enquiry.search.SearchTask;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.Game;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.service.event.EventManager;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Drives an engine with simulated players searching against the {@link StubSearchServer} and reports the throughput and latency of
+ * each amount of players, to find where a configuration saturates.
+ * <p>
+ * Enquiry is bootstrapped without a server, so searches go through {@link SearchEngine#lookup(String, int)} with the per player rate
+ * limit applied as {@link SearchTask} does. Events, rendering and delivery need the Sponge implementation and are left out. Options of
+ * ./config/enquiry.conf can be overridden as comma separated path=value pairs, for example
+ * --option options.executor.threads=16,engines.google.options.max-concurrent=8. The options of the {@link StubSearchServer} are accepted
+ * as well.
+ */
+public class LoadTest {
+
+    private final SearchEngine engine;
+    private final List<String> queries = Lists.newArrayList();
+    private final long thinkTime;
+
+    public LoadTest(SearchEngine engine, int distinctQueries, long thinkTime) {
+        this.engine = engine;
+        for (int i = 0; i < distinctQueries; i++) {
+            this.queries.add("load test query " + i);
+        }
+        this.thinkTime = thinkTime;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = StubSearchServer.options(args);
+        final StubSearchServer server = StubSearchServer.of(options);
+        server.start();
+        final File directory = Files.createTempDir();
+        try {
+            final SearchEngine engine = bootstrap(directory, server.getBaseUrl(), StubSearchServer.option(options, "engine", "google"),
+                    StubSearchServer.option(options, "option", ""));
+            final LoadTest test = new LoadTest(engine,
+                    Integer.parseInt(StubSearchServer.option(options, "queries", "10000")),
+                    Long.parseLong(StubSearchServer.option(options, "think-time", "5000")));
+            final long duration = TimeUnit.SECONDS.toMillis(Long.parseLong(StubSearchServer.option(options, "duration", "30")));
+            System.out.println(String.format(Locale.ENGLISH, "%8s %10s %10s %10s %10s %10s %10s %8s %8s %8s", "players", "searches",
+                    "per second", "p50 ms", "p90 ms", "p99 ms", "max ms", "busy", "limited", "errors"));
+            double previous = 0;
+            for (String players : StubSearchServer.option(options, "players", "10,25,50,100,200").split(",")) {
+                final Result result = test.run(Integer.parseInt(players.trim()), duration);
+                System.out.println(result.format() + (previous > 0 && result.throughput < previous * 1.05 ? "  <- saturated" : ""));
+                previous = Math.max(previous, result.throughput);
+            }
+            System.out.println("The stub server received " + server.getRequestCount() + " requests");
+        } finally {
+            Enquiry.instance.executor.shutdown();
+            Enquiry.instance.diskCache.close();
+            server.stop();
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Runs the players for the duration.
+     * @param players The amount of players
+     * @param duration The duration in milliseconds
+     * @return The result
+     * @throws InterruptedException Thrown when interrupted while waiting for the players
+     */
+    public Result run(int players, long duration) throws InterruptedException {
+        final Histogram latency = new Histogram();
+        final AtomicLongArray outcomes = new AtomicLongArray(SearchFailureEvent.Reason.values().length + 1);
+        final long end = System.currentTimeMillis() + duration;
+        final CountDownLatch done = new CountDownLatch(players);
+        for (int i = 0; i < players; i++) {
+            final CommandSource player = player("Player" + i);
+            final Thread thread = new Thread(() -> {
+                try {
+                    while (System.currentTimeMillis() < end) {
+                        this.search(player, latency, outcomes);
+                        // Players think for a random time around the mean before searching again
+                        Thread.sleep((long) (this.thinkTime * 2 * ThreadLocalRandom.current().nextDouble()));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "Load Test Player #" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        return new Result(players, duration, latency, outcomes);
+    }
+
+    private void search(CommandSource player, Histogram latency, AtomicLongArray outcomes) throws InterruptedException {
+        final long start = System.nanoTime();
+        if (!Enquiry.instance.playerRateLimiter.tryAcquire(player)) {
+            outcomes.incrementAndGet(SearchFailureEvent.Reason.RATE_LIMITED.ordinal() + 1);
+            return;
+        }
+        final String query = this.queries.get(ThreadLocalRandom.current().nextInt(this.queries.size()));
+        try {
+            this.engine.lookup(query).get();
+            latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            outcomes.incrementAndGet(0);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                throw (InterruptedException) e;
+            }
+            outcomes.incrementAndGet(SearchTask.reasonOf(SearchTask.unwrap(e)).ordinal() + 1);
+        }
+    }
+
+    /**
+     * Sets up Enquiry without a server and creates the engine, searching the stub server.
+     * @param directory The directory to store the configuration and caches in
+     * @param baseUrl The url of the stub server
+     * @param id The id of the engine
+     * @param overrides The options to override as comma separated path=value pairs
+     * @return The engine
+     * @throws IOException Thrown when the configuration could not be written
+     */
+    static SearchEngine bootstrap(File directory, String baseUrl, String id, String overrides) throws IOException {
+        final Enquiry enquiry = new Enquiry();
+        Enquiry.instance = enquiry;
+        enquiry.logger = LoggerFactory.getLogger("Enquiry");
+        enquiry.container = proxy(PluginContainer.class, "enquiry");
+        final EventManager events = proxy(EventManager.class, null);
+        enquiry.game = proxy(Game.class, events);
+        final File configuration = new File(directory, "enquiry.conf");
+        enquiry.storage = new Storage(configuration, HoconConfigurationLoader.builder().setFile(configuration).build()).load();
+        enquiry.storage.getChildNode("engines.bing.auth.account-key").setValue("stub");
+        enquiry.storage.getChildNode("engines.google.auth.api-key").setValue("stub");
+        enquiry.storage.getChildNode("engines.google.auth.search-id").setValue("stub");
+        // Measure upstream unless the caches are asked for
+        enquiry.storage.getChildNode("engines." + id + ".options.cache.enabled").setValue(false);
+        enquiry.storage.getChildNode("options.disk-cache.enabled").setValue(false);
+        enquiry.storage.getChildNode("engines." + id + ".options.rate-limit.daily-quota").setValue(0);
+        for (String override : overrides.split(",")) {
+            final int separator = override.indexOf('=');
+            if (separator > 0) {
+                enquiry.storage.getChildNode(override.substring(0, separator).trim()).setValue(override.substring(separator + 1).trim());
+            }
+        }
+        // Snapshot the configuration again with the overrides applied
+        enquiry.storage.load();
+        enquiry.executor = SearchExecutor.create();
+        enquiry.transport = HttpTransport.create();
+        enquiry.playerRateLimiter = PlayerRateLimiter.create();
+        enquiry.diskCache = DiskResultCache.create(new File(directory, "enquiry-cache"), enquiry.executor);
+        final SearchEngine engine;
+        switch (id) {
+            case "bing":
+                engine = new BingEngine(id) {
+                    @Override
+                    public String getSearchUrl() {
+                        return baseUrl + "/bing";
+                    }
+                };
+                break;
+            case "duckduckgo":
+                engine = new DuckDuckGoEngine(id) {
+                    @Override
+                    public String getSearchUrl() {
+                        return baseUrl + "/duckduckgo";
+                    }
+                };
+                break;
+            default:
+                engine = new GoogleEngine(id) {
+                    @Override
+                    public String getSearchUrl() {
+                        return baseUrl + "/google";
+                    }
+                };
+        }
+        return enquiry.putEngine(engine);
+    }
+
+    private static CommandSource player(String name) {
+        final UUID uuid = UUID.randomUUID();
+        return (Player) Proxy.newProxyInstance(LoadTest.class.getClassLoader(), new Class<?>[] {Player.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getUniqueId":
+                    return uuid;
+                case "getName":
+                case "toString":
+                    return name;
+                case "isOnline":
+                    return true;
+                case "hashCode":
+                    return uuid.hashCode();
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Creates an implementation of an interface returning the value from methods returning its type and default values otherwise.
+     * @param type The interface
+     * @param value The value
+     * @param <T> The type of the interface
+     * @return The implementation
+     */
+    private static <T> T proxy(Class<T> type, Object value) {
+        return type.cast(Proxy.newProxyInstance(LoadTest.class.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+            if (value != null && method.getReturnType().isInstance(value)) {
+                return value;
+            }
+            return defaultValue(method.getReturnType());
+        }));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        }
+        return null;
+    }
+
+    /**
+     * The result of running an amount of players.
+     */
+    public static class Result {
+
+        private final int players;
+        private final double throughput;
+        private final Histogram latency;
+        private final AtomicLongArray outcomes;
+
+        Result(int players, long duration, Histogram latency, AtomicLongArray outcomes) {
+            this.players = players;
+            this.throughput = latency.getCount() * 1000.0 / duration;
+            this.latency = latency;
+            this.outcomes = outcomes;
+        }
+
+        String format() {
+            return String.format(Locale.ENGLISH, "%8d %10d %10.1f %10.1f %10.1f %10.1f %10.1f %8d %8d %8d", this.players,
+                    this.latency.getCount(), this.throughput, this.latency.percentile(50) / 1000.0, this.latency.percentile(90) / 1000.0,
+                    this.latency.percentile(99) / 1000.0, this.latency.getMax() / 1000.0,
+                    this.outcomes.get(SearchFailureEvent.Reason.BUSY.ordinal() + 1),
+                    this.outcomes.get(SearchFailureEvent.Reason.RATE_LIMITED.ordinal() + 1)
+                            + this.outcomes.get(SearchFailureEvent.Reason.QUOTA_EXCEEDED.ordinal() + 1),
+                    this.outcomes.get(SearchFailureEvent.Reason.ERROR.ordinal() + 1)
+                            + this.outcomes.get(SearchFailureEvent.Reason.UNAVAILABLE.ordinal() + 1));
+        }
+    }
+}
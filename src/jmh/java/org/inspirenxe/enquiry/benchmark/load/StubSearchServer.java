@@ -0,0 +1,304 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.benchmark.load;
+
+import com.google.common.collect.Maps;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An HTTP server imitating the JSON responses of the Google custom search, Bing and DuckDuckGo APIs, served under /google, /bing and
+ * /duckduckgo.
+ * <p>
+ * Response times follow a log-normal distribution given by its median and 99th percentile, a share of requests fail with a 503 or stall
+ * past any sensible read timeout, and the amount of results and length of their descriptions set the size of the payloads. Results are
+ * derived from the query and page so repeated requests get identical responses.
+ */
+public class StubSearchServer {
+
+    // The 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.326;
+
+    private final HttpServer server;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final double median;
+    private final double sigma;
+    private final double errorRate;
+    private final double stallRate;
+    private final int results;
+    private final int descriptionLength;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Creates a server.
+     * @param port The port to listen on, 0 for any free port
+     * @param median The median response time in milliseconds
+     * @param p99 The 99th percentile response time in milliseconds
+     * @param errorRate The share of requests failing with a 503
+     * @param stallRate The share of requests stalling for a minute
+     * @param results The maximum amount of results of a response
+     * @param descriptionLength The length of the description of a result
+     * @throws IOException Thrown when the port could not be bound
+     */
+    public StubSearchServer(int port, double median, double p99, double errorRate, double stallRate, int results, int descriptionLength)
+            throws IOException {
+        this.median = Math.max(0, median);
+        this.sigma = median > 0 && p99 > median ? Math.log(p99 / median) / Z_99 : 0;
+        this.errorRate = errorRate;
+        this.stallRate = stallRate;
+        this.results = results;
+        this.descriptionLength = descriptionLength;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 128);
+        this.server.setExecutor(this.workers);
+        this.server.createContext("/google", exchange -> this.handle(exchange, Api.GOOGLE));
+        this.server.createContext("/bing", exchange -> this.handle(exchange, Api.BING));
+        this.server.createContext("/duckduckgo", exchange -> this.handle(exchange, Api.DUCKDUCKGO));
+    }
+
+    /**
+     * Creates a server from command line options.
+     * @param options The options
+     * @return The server
+     * @throws IOException Thrown when the port could not be bound
+     */
+    public static StubSearchServer of(Map<String, String> options) throws IOException {
+        return new StubSearchServer(
+                Integer.parseInt(option(options, "port", "0")),
+                Double.parseDouble(option(options, "median", "150")),
+                Double.parseDouble(option(options, "p99", "800")),
+                Double.parseDouble(option(options, "error-rate", "0.01")),
+                Double.parseDouble(option(options, "stall-rate", "0")),
+                Integer.parseInt(option(options, "results", "10")),
+                Integer.parseInt(option(options, "description-length", "160")));
+    }
+
+    public static void main(String[] args) throws IOException {
+        final StubSearchServer server = of(options(args));
+        server.start();
+        System.out.println("Serving stub search APIs on " + server.getBaseUrl() + "/{google,bing,duckduckgo}, stop with Ctrl+C");
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    public void stop() {
+        this.server.stop(0);
+        this.workers.shutdownNow();
+    }
+
+    /**
+     * Gets the url the server is reachable at.
+     * @return The base url
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the amount of requests received.
+     * @return The request count
+     */
+    public long getRequestCount() {
+        return this.requests.get();
+    }
+
+    private void handle(HttpExchange exchange, Api api) throws IOException {
+        this.requests.incrementAndGet();
+        try {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final double roll = random.nextDouble();
+            if (roll < this.stallRate) {
+                sleep(TimeUnit.MINUTES.toMillis(1));
+            } else {
+                sleep((long) (this.median * Math.exp(this.sigma * random.nextGaussian())));
+            }
+            if (roll >= this.stallRate && roll < this.stallRate + this.errorRate) {
+                final byte[] body = "{\"error\":{\"code\":503,\"message\":\"Backend Error\"}}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(503, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                return;
+            }
+            final Map<String, String> params = params(exchange.getRequestURI().getRawQuery());
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                this.write(new JsonWriter(writer), api, params);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void write(JsonWriter json, Api api, Map<String, String> params) throws IOException {
+        final String query = params.getOrDefault(api.queryParam, "").replace("'", "");
+        final int count = Math.min(this.results, Integer.parseInt(params.getOrDefault(api.countParam, Integer.toString(this.results))));
+        int offset = Integer.parseInt(params.getOrDefault(api.offsetParam, api == Api.GOOGLE ? "1" : "0"));
+        if (api == Api.GOOGLE) {
+            offset--;
+        }
+        final Random random = new Random(query.hashCode() * 31L + offset);
+        json.beginObject();
+        switch (api) {
+            case GOOGLE:
+                json.name("items").beginArray();
+                for (int i = 0; i < count; i++) {
+                    json.beginObject()
+                            .name("title").value(title(query, offset + i))
+                            .name("link").value(url(query, offset + i))
+                            .name("snippet").value(this.description(random))
+                            .endObject();
+                }
+                json.endArray();
+                break;
+            case BING:
+                json.name("d").beginObject().name("results").beginArray();
+                for (int i = 0; i < count; i++) {
+                    json.beginObject()
+                            .name("__metadata").beginObject().name("type").value("WebResult").endObject()
+                            .name("ID").value(Long.toHexString(random.nextLong()))
+                            .name("Title").value(title(query, offset + i))
+                            .name("Description").value(this.description(random))
+                            .name("DisplayUrl").value(url(query, offset + i).substring(8))
+                            .name("Url").value(url(query, offset + i))
+                            .endObject();
+                }
+                json.endArray().endObject();
+                break;
+            case DUCKDUCKGO:
+                json.name("Heading").value(query).name("Type").value("D").name("RelatedTopics").beginArray();
+                // Every related topic is returned at once
+                for (int i = 0; i < this.results * 3; i++) {
+                    json.beginObject()
+                            .name("Icon").beginObject().name("URL").value("").endObject()
+                            .name("FirstURL").value(url(query, i))
+                            .name("Text").value(title(query, i) + " " + this.description(random))
+                            .endObject();
+                }
+                json.endArray().name("Results").beginArray().endArray();
+                break;
+        }
+        json.endObject().flush();
+    }
+
+    private static String title(String query, int index) {
+        return "Result " + (index + 1) + " for " + query;
+    }
+
+    private static String url(String query, int index) {
+        return "https://example.com/" + Integer.toHexString(query.hashCode()) + "/" + index;
+    }
+
+    private String description(Random random) {
+        final StringBuilder description = new StringBuilder(this.descriptionLength);
+        while (description.length() < this.descriptionLength) {
+            description.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(6) == 0) {
+                description.append(' ');
+            }
+        }
+        return description.toString();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> params(String query) throws UnsupportedEncodingException {
+        final Map<String, String> params = Maps.newHashMap();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                final int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                            URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Parses command line options given as --name value pairs.
+     * @param args The arguments
+     * @return The options
+     */
+    static Map<String, String> options(String[] args) {
+        final Map<String, String> options = Maps.newHashMap();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option but got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    static String option(Map<String, String> options, String name, String defaultValue) {
+        final String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private enum Api {
+        GOOGLE("q", "num", "start"),
+        BING("Query", "$top", "$skip"),
+        DUCKDUCKGO("q", "", "");
+
+        private final String queryParam;
+        private final String countParam;
+        private final String offsetParam;
+
+        Api(String queryParam, String countParam, String offsetParam) {
+            this.queryParam = queryParam;
+            this.countParam = countParam;
+            this.offsetParam = offsetParam;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads the configuration when its file changes.
+ * <p>
+ * Editors tend to write a file in several steps, changes are collected until the file has been quiet for a moment before reloading.
+ */
+public class ConfigWatcher implements Runnable {
+
+    private static final long QUIET_PERIOD = 500;
+
+    private final File configuration;
+    private final WatchService service;
+    private final Thread thread;
+
+    public ConfigWatcher(File configuration) throws IOException {
+        this.configuration = configuration;
+        this.service = FileSystems.getDefault().newWatchService();
+        configuration.getAbsoluteFile().getParentFile().toPath().register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this, "Enquiry Config Watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching the configuration file.
+     * @param configuration The configuration file
+     * @return The {@link ConfigWatcher}
+     * @throws IOException If the directory of the file could not be watched
+     */
+    public static ConfigWatcher start(File configuration) throws IOException {
+        final ConfigWatcher watcher = new ConfigWatcher(configuration);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (!this.changed(this.service.take())) {
+                    continue;
+                }
+                WatchKey key;
+                while ((key = this.service.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null) {
+                    this.changed(key);
+                }
+                try {
+                    Enquiry.instance.reload();
+                    Enquiry.instance.logger.info("Reloaded " + this.configuration.getName() + " after it changed.");
+                } catch (IOException | RuntimeException e) {
+                    Enquiry.instance.logger.error("Failed to reload " + this.configuration.getName() + ", keeping the previous configuration.",
+                            e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    /**
+     * Stops watching the configuration file.
+     */
+    public void stop() {
+        try {
+            this.service.close();
+        } catch (IOException ignored) {
+        }
+        this.thread.interrupt();
+    }
+
+    private boolean changed(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path && ((Path) event.context()).getFileName().toString().equals(this.configuration.getName())) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+}
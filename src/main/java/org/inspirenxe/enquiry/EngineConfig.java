@@ -0,0 +1,254 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.Types;
+import org.inspirenxe.enquiry.cache.QueryNormalizer;
+import org.inspirenxe.enquiry.search.LineTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the options of an engine under engines.&lt;id&gt;.
+ */
+public final class EngineConfig {
+
+    private final ImmutableList<String> aliases;
+    private final ImmutableMap<String, String> auth;
+    private final ImmutableMap<String, String> values;
+    private final int maxResults;
+    private final int maxConcurrent;
+    private final LineTemplate lineTemplate;
+    private final boolean cacheEnabled;
+    private final long cacheTtl;
+    private final long cacheMaxEntries;
+    private final long cacheMaxWeight;
+    private final QueryNormalizer normalizer;
+    private final boolean sendNormalized;
+    private final int breakerFailureThreshold;
+    private final double breakerErrorRate;
+    private final int breakerWindow;
+    private final long breakerOpenDuration;
+    private final String hedgeFallback;
+    private final double hedgePercentile;
+    private final long hedgeMinDelay;
+    private final double rateLimitPerSecond;
+    private final int rateLimitBurst;
+    private final int rateLimitDailyQuota;
+
+    private EngineConfig(ConfigurationNode node) {
+        final ConfigurationNode options = node.getNode("options");
+        this.aliases = ImmutableList.copyOf(options.getNode("aliases").getList(Types::asString));
+        final ImmutableMap.Builder<String, String> auth = ImmutableMap.builder();
+        for (Map.Entry<Object, ? extends ConfigurationNode> entry : node.getNode("auth").getChildrenMap().entrySet()) {
+            auth.put(entry.getKey().toString(), entry.getValue().getString(""));
+        }
+        this.auth = auth.build();
+        final ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+        for (Map.Entry<Object, ? extends ConfigurationNode> entry : options.getChildrenMap().entrySet()) {
+            final ConfigurationNode value = entry.getValue();
+            if (!value.hasMapChildren() && !value.hasListChildren() && value.getValue() != null) {
+                values.put(entry.getKey().toString(), value.getString());
+            }
+        }
+        this.values = values.build();
+        this.maxResults = Math.max(1, options.getNode("max-results").getInt(10));
+        this.maxConcurrent = Math.max(1, options.getNode("max-concurrent").getInt(3));
+        this.lineTemplate = LineTemplate.compile(options.getNode("style", "line-format").getString("&f${resultNumber}. &d${resultTitle}"));
+        this.cacheEnabled = options.getNode("cache", "enabled").getBoolean(true);
+        this.cacheTtl = options.getNode("cache", "ttl").getLong(300);
+        this.cacheMaxEntries = options.getNode("cache", "max-entries").getLong(256);
+        this.cacheMaxWeight = options.getNode("cache", "max-weight").getLong(0);
+        this.normalizer = normalizer(options.getNode("normalize", "steps"));
+        this.sendNormalized = options.getNode("normalize", "send-normalized").getBoolean(false);
+        this.breakerFailureThreshold = options.getNode("circuit-breaker", "failure-threshold").getInt(5);
+        this.breakerErrorRate = options.getNode("circuit-breaker", "error-rate").getDouble(0.5);
+        this.breakerWindow = options.getNode("circuit-breaker", "window").getInt(20);
+        this.breakerOpenDuration = TimeUnit.SECONDS.toMillis(options.getNode("circuit-breaker", "open-duration").getLong(30));
+        this.hedgeFallback = options.getNode("hedge", "fallback").getString("");
+        this.hedgePercentile = options.getNode("hedge", "percentile").getDouble(95);
+        this.hedgeMinDelay = options.getNode("hedge", "min-delay").getLong(500);
+        this.rateLimitPerSecond = options.getNode("rate-limit", "per-second").getDouble(0);
+        this.rateLimitBurst = options.getNode("rate-limit", "burst").getInt(1);
+        this.rateLimitDailyQuota = options.getNode("rate-limit", "daily-quota").getInt(0);
+    }
+
+    /**
+     * Reads the options of an engine, options that are not set have their default value.
+     * @param node The node of the engine
+     * @return The {@link EngineConfig}
+     */
+    public static EngineConfig of(ConfigurationNode node) {
+        return new EngineConfig(node);
+    }
+
+    private static QueryNormalizer normalizer(ConfigurationNode node) {
+        if (node.isVirtual()) {
+            return QueryNormalizer.DEFAULT;
+        }
+        final List<QueryNormalizer.Step> steps = Lists.newArrayList();
+        for (String id : node.getList(Types::asString)) {
+            try {
+                steps.add(QueryNormalizer.Step.of(id));
+            } catch (IllegalArgumentException e) {
+                // A typo must not keep Enquiry from starting or the configuration from reloading
+                Enquiry.instance.logger.warn(e.getMessage() + " under " + Joiner.on('.').join(node.getPath()) + ", skipping it.");
+            }
+        }
+        return QueryNormalizer.of(steps.toArray(new QueryNormalizer.Step[steps.size()]));
+    }
+
+    /**
+     * Gets the aliases of the engine's command.
+     * @return The aliases
+     */
+    public ImmutableList<String> getAliases() {
+        return aliases;
+    }
+
+    /**
+     * Gets a credential under auth.
+     * @param name The name of the credential
+     * @return The credential or an empty string if it is not set
+     */
+    public String getAuth(String name) {
+        final String value = auth.get(name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Gets an option specific to the engine directly under options.
+     * @param name The name of the option
+     * @param def The value if the option is not set
+     * @return The value
+     */
+    public String getOption(String name, String def) {
+        final String value = values.get(name);
+        return value == null ? def : value;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public LineTemplate getLineTemplate() {
+        return lineTemplate;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * Gets the time results are cached for.
+     * @return The time to live in seconds
+     */
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public long getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public long getCacheMaxWeight() {
+        return cacheMaxWeight;
+    }
+
+    /**
+     * Gets the pipeline composed from normalize.steps producing the canonical form of queries.
+     * @return The {@link QueryNormalizer}
+     */
+    public QueryNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Gets if the canonical form of a query is searched upstream rather than the query as it was typed.
+     * @return True if the canonical form is sent, false if not
+     */
+    public boolean isSendNormalized() {
+        return sendNormalized;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public double getBreakerErrorRate() {
+        return breakerErrorRate;
+    }
+
+    public int getBreakerWindow() {
+        return breakerWindow;
+    }
+
+    /**
+     * Gets the time the circuit stays open.
+     * @return The open duration in milliseconds
+     */
+    public long getBreakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+
+    public String getHedgeFallback() {
+        return hedgeFallback;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Gets the least time to wait before hedging.
+     * @return The minimum delay in milliseconds
+     */
+    public long getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public double getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public int getRateLimitDailyQuota() {
+        return rateLimitDailyQuota;
+    }
+}
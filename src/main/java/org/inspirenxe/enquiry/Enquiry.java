@@ -24,34 +24,65 @@
  */
 package org.inspirenxe.enquiry;
 
+import static org.spongepowered.api.util.command.args.GenericArguments.optional;
+import static org.spongepowered.api.util.command.args.GenericArguments.playerOrSource;
+import static org.spongepowered.api.util.command.args.GenericArguments.seq;
+import static org.spongepowered.api.util.command.args.GenericArguments.string;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
-import ninja.leaping.configurate.Types;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.inspirenxe.enquiry.api.engine.SearchEngine;
 import org.inspirenxe.enquiry.api.event.SearchEngineRegistrationEvent;
+import org.inspirenxe.enquiry.api.http.HttpTransport;
+import org.inspirenxe.enquiry.cache.DiskResultCache;
 import org.inspirenxe.enquiry.engine.BingEngine;
 import org.inspirenxe.enquiry.engine.DuckDuckGoEngine;
 import org.inspirenxe.enquiry.engine.GoogleEngine;
+import org.inspirenxe.enquiry.engine.LocalEngine;
+import org.inspirenxe.enquiry.metrics.Histogram;
+import org.inspirenxe.enquiry.metrics.MetricsExporter;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+import org.inspirenxe.enquiry.search.ConnectionWarmer;
+import org.inspirenxe.enquiry.search.DeliveryQueue;
+import org.inspirenxe.enquiry.search.MetaSearchTask;
+import org.inspirenxe.enquiry.search.PlayerRateLimiter;
+import org.inspirenxe.enquiry.search.QueryCompleter;
+import org.inspirenxe.enquiry.search.QueryElement;
+import org.inspirenxe.enquiry.search.SearchExecutor;
+import org.inspirenxe.enquiry.search.SearchSessions;
+import org.inspirenxe.enquiry.search.SearchTask;
 import org.slf4j.Logger;
 import org.spongepowered.api.Game;
+import org.spongepowered.api.entity.player.Player;
 import org.spongepowered.api.event.Subscribe;
 import org.spongepowered.api.event.state.ConstructionEvent;
 import org.spongepowered.api.event.state.ServerAboutToStartEvent;
+import org.spongepowered.api.event.state.ServerStartedEvent;
+import org.spongepowered.api.event.state.ServerStoppingEvent;
 import org.spongepowered.api.plugin.Plugin;
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.service.config.DefaultConfig;
 import org.spongepowered.api.text.Texts;
+import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.annotation.NonnullByDefault;
+import org.spongepowered.api.util.command.CommandResult;
+import org.spongepowered.api.util.command.CommandSource;
 import org.spongepowered.api.util.command.spec.CommandSpec;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Plugin(id = "enquiry", name = "Enquiry", version = "1.2")
 @NonnullByDefault
@@ -64,13 +95,23 @@ public class Enquiry {
     @Inject public Logger logger;
 
     public Storage storage;
+    public SearchExecutor executor;
+    public HttpTransport transport;
+    public PlayerRateLimiter playerRateLimiter;
+    public DiskResultCache diskCache;
+    public SearchSessions sessions;
+    public DeliveryQueue delivery;
+    public MetricsExporter metrics;
+    public ConfigWatcher watcher;
+    public ConnectionWarmer warmer;
+    public QueryCompleter completer;
 
     @DefaultConfig(sharedRoot = true)
     @Inject private File configuration;
     @DefaultConfig(sharedRoot = true)
     @Inject private ConfigurationLoader<CommentedConfigurationNode> loader;
 
-    private final Set<SearchEngine> engines = Sets.newHashSet();
+    private final Set<SearchEngine> engines = Sets.newConcurrentHashSet();
 
     @Subscribe
     public void onConstruct(ConstructionEvent event) {
@@ -79,17 +120,34 @@ public class Enquiry {
 
     @Subscribe
     public void onServerAboutToStart(ServerAboutToStartEvent event) throws IOException {
+        final long start = System.nanoTime();
         storage = new Storage(configuration, loader).load();
+        executor = SearchExecutor.create();
+        transport = HttpTransport.create();
+        playerRateLimiter = PlayerRateLimiter.create();
+        diskCache = DiskResultCache.create(new File(configuration.getParentFile(), "enquiry-cache"), executor);
+        sessions = SearchSessions.create();
+        delivery = DeliveryQueue.create();
+        completer = QueryCompleter.create(new File(configuration.getParentFile(), "enquiry-queries.dat"));
 
-        final List<String> bingAliases = storage.getChildNode("engines.bing.options.aliases").getList(Types::asString);
+        final List<String> bingAliases = storage.getConfig().getEngine("bing").getAliases();
         new BingEngine("bing", bingAliases.toArray(new String[bingAliases.size()])).register();
 
-        final List<String> duckduckgoAliases = storage.getChildNode("engines.duckduckgo.options.aliases").getList(Types::asString);
+        final List<String> duckduckgoAliases = storage.getConfig().getEngine("duckduckgo").getAliases();
         new DuckDuckGoEngine("duckduckgo", duckduckgoAliases.toArray(new String[duckduckgoAliases.size()])).register();
 
-        final List<String> googleAliases = storage.getChildNode("engines.google.options.aliases").getList(Types::asString);
+        final List<String> googleAliases = storage.getConfig().getEngine("google").getAliases();
         new GoogleEngine("google", googleAliases.toArray(new String[googleAliases.size()])).register();
 
+        // Results of the local engine link to where the documents are published, without a base url it has nothing to link to
+        final EngineConfig localConfig = storage.getConfig().getEngine("local");
+        if (localConfig.getOption("base-url", "").isEmpty()) {
+            this.logger.info("Local search is not registered, set engines.local.options.base-url and restart to enable it");
+        } else {
+            final List<String> localAliases = localConfig.getAliases();
+            new LocalEngine("local", configuration.getParentFile(), localAliases.toArray(new String[localAliases.size()])).register();
+        }
+
         // Fire SearchEngineRegistrationEvent to register search engines
         this.game.getEventManager().post(new SearchEngineRegistrationEvent(engines));
 
@@ -98,13 +156,216 @@ public class Enquiry {
         for (SearchEngine engine : engines) {
             this.game.getCommandDispatcher().register(this, engine.getCommandSpec(), engine.getAliases());
             children.put(engine.getAliases(), engine.getCommandSpec());
-            this.logger.info("Registered [" + Texts.toPlain(engine.getName()) + "] with aliases " + engine.getAliases());
+            this.logger.info("Registered [" + engine.getPlainName() + "] with aliases " + engine.getAliases());
         }
+        children.put(Lists.newArrayList("all"), this.createMetaSearchSpec());
+        children.put(Lists.newArrayList("next"), this.createNextPageSpec());
+        children.put(Lists.newArrayList("stats"), this.createStatsSpec());
+        children.put(Lists.newArrayList("reload"), this.createReloadSpec());
         this.game.getCommandDispatcher().register(this, CommandSpec.builder().children(children).build(), "enquiry", "eq");
+
+        try {
+            metrics = new MetricsExporter();
+            metrics.register(engines);
+        } catch (RuntimeException e) {
+            // Searches do not depend on the exporter, start without it
+            this.logger.warn("Could not export the metrics of Enquiry.", e);
+        }
+
+        if (storage.getConfig().isWatch()) {
+            watcher = ConfigWatcher.start(configuration);
+        }
+        this.logger.info("Started with " + engines.size() + " engine(s) in " + millis(TimeUnit.NANOSECONDS.toMicros(System.nanoTime()
+                - start)));
+    }
+
+    /**
+     * Reloads the configuration and applies it to the running components.
+     * <p>
+     * Options sizing thread pools, caches and connection pools as well as command aliases only change on restart.
+     * @return The new {@link EnquiryConfig}
+     * @throws IOException If the configuration could not be read or saved
+     */
+    public EnquiryConfig reload() throws IOException {
+        final EnquiryConfig config = this.storage.reload();
+        this.transport.configure(config);
+        this.executor.configure(config);
+        this.sessions.configure(config);
+        this.delivery.configure(config);
+        for (SearchEngine engine : this.engines) {
+            engine.reload();
+        }
+        return config;
+    }
+
+    @SuppressWarnings("deprecation")
+    private CommandSpec createMetaSearchSpec() {
+        return CommandSpec.builder()
+                .description(Texts.of("Searches every engine for the query provided."))
+                .arguments(seq(playerOrSource(Texts.of("player"), this.game)), new QueryElement(Texts.of("search")))
+                .permission(this.container.getId() + ".command.search.all")
+                .executor((src, args) -> {
+                    final CommandSource target = args.<Player>getOne("player").get();
+                    final String query = args.<String>getOne("search").get();
+                    // Searching all engines must not bypass the permission of searching a single engine
+                    final List<SearchEngine> engines = Lists.newArrayList();
+                    for (SearchEngine engine : this.getEngines()) {
+                        if (src.hasPermission(this.container.getId() + ".command.search." + engine.getId())) {
+                            engines.add(engine);
+                        }
+                    }
+                    if (engines.isEmpty()) {
+                        src.sendMessage(Texts.of(TextColors.RED, "You do not have permission to search any engine."));
+                        return CommandResult.empty();
+                    }
+                    try {
+                        this.executor.execute(new MetaSearchTask(src, target, engines, query));
+                    } catch (RejectedExecutionException e) {
+                        src.sendMessage(Texts.of(TextColors.RED, "Enquiry is busy, please try again shortly."));
+                        return CommandResult.empty();
+                    }
+                    return CommandResult.success();
+                }).build();
+    }
+
+    private CommandSpec createNextPageSpec() {
+        return CommandSpec.builder()
+                .description(Texts.of("Shows the next page of results of your last search."))
+                .executor((src, args) -> {
+                    final SearchSessions.Session session = this.sessions.get(src);
+                    if (session == null) {
+                        src.sendMessage(Texts.of(TextColors.RED, "You have not searched for anything recently."));
+                        return CommandResult.empty();
+                    }
+                    if (!session.hasNext()) {
+                        src.sendMessage(Texts.of(TextColors.RED, "There are no more results for: ", TextColors.YELLOW, session.getQuery()));
+                        return CommandResult.empty();
+                    }
+                    if (!src.hasPermission(this.container.getId() + ".command.search." + session.getEngine().getId())) {
+                        src.sendMessage(Texts.of(TextColors.RED, "You do not have permission to search ", session.getEngine().getName()));
+                        return CommandResult.empty();
+                    }
+                    try {
+                        this.executor.execute(new SearchTask(src, session.getTarget(), session.getEngine(), session.getQuery(),
+                                session.getPage() + 1));
+                    } catch (RejectedExecutionException e) {
+                        src.sendMessage(Texts.of(TextColors.RED, "Enquiry is busy, please try again shortly."));
+                        return CommandResult.empty();
+                    }
+                    return CommandResult.success();
+                }).build();
+    }
+
+    private CommandSpec createStatsSpec() {
+        return CommandSpec.builder()
+                .description(Texts.of("Shows the statistics of Enquiry or in detail of an engine."))
+                .arguments(optional(string(Texts.of("engine"))))
+                .permission(this.container.getId() + ".command.stats")
+                .executor((src, args) -> {
+                    final Optional<String> id = args.<String>getOne("engine");
+                    if (!id.isPresent()) {
+                        src.sendMessage(Texts.of(TextColors.GOLD, "Enquiry", TextColors.RESET, ": queue ", this.executor.getQueueDepth(),
+                                ", active ", this.executor.getActiveCount(), ", rejected ", this.executor.getRejectedCount(), ", delivering ",
+                                this.delivery.getQueueDepth(), ", dropped ", this.delivery.getDroppedCount(), ", disk cache ",
+                                this.diskCache.getHitCount(), "/", this.diskCache.getHitCount() + this.diskCache.getMissCount(), " hits"));
+                        for (SearchEngine engine : this.engines) {
+                            final SearchMetrics metrics = engine.getMetrics();
+                            final Histogram total = metrics.getHistogram(SearchMetrics.Stage.TOTAL);
+                            src.sendMessage(Texts.of(engine.getName(), TextColors.RESET, ": ", metrics.getSuccessCount(), " ok, ",
+                                    metrics.getFailureCount(), " failed, ", metrics.getCancelledCount(), " cancelled, p50 ",
+                                    millis(total.percentile(50)), ", p99 ", millis(total.percentile(99)), ", cache ",
+                                    engine.getCache().getHitCount(), "/", engine.getCache().getHitCount() + engine.getCache().getMissCount(),
+                                    " hits (", engine.getCache().getNormalizedHitCount(), " normalized), circuit ",
+                                    engine.getCircuitBreaker().getState().name().toLowerCase(Locale.ENGLISH)));
+                        }
+                        return CommandResult.success();
+                    }
+                    for (SearchEngine engine : this.engines) {
+                        if (engine.getId().equalsIgnoreCase(id.get()) || engine.getAliases().contains(id.get())) {
+                            final SearchMetrics metrics = engine.getMetrics();
+                            src.sendMessage(Texts.of(engine.getName(), TextColors.RESET, ": ", metrics.getSuccessCount(), " ok, ",
+                                    metrics.getFailureCount(), " failed, ", metrics.getCancelledCount(), " cancelled, ",
+                                    metrics.getResultCount(), " results, ", metrics.getBytesReceived() / 1024, " KiB received"));
+                            for (SearchMetrics.Stage stage : SearchMetrics.Stage.values()) {
+                                final Histogram histogram = metrics.getHistogram(stage);
+                                src.sendMessage(Texts.of("  ", TextColors.YELLOW, stage.getId(), TextColors.RESET, ": ", histogram.getCount(),
+                                        " recorded, p50 ", millis(histogram.percentile(50)), ", p95 ", millis(histogram.percentile(95)),
+                                        ", p99 ", millis(histogram.percentile(99)), ", max ", millis(histogram.getMax())));
+                            }
+                            src.sendMessage(Texts.of("  active ", this.executor.getActiveCount(engine), ", coalesced ",
+                                    engine.getCoalescer().getCoalescedCount(), ", hedged ", engine.getHedgePolicy().getHedgedCount(), " (",
+                                    engine.getHedgePolicy().getWonCount(), " won, ", engine.getHedgePolicy().getRejectedCount(),
+                                    " rejected), rate limited ", engine.getRateLimiter().getLimitedCount(),
+                                    ", quota ", engine.getRateLimiter().getQuotaUsed(), "/", engine.getRateLimiter().getDailyQuota()));
+                            return CommandResult.success();
+                        }
+                    }
+                    src.sendMessage(Texts.of(TextColors.RED, "No engine is registered as ", id.get()));
+                    return CommandResult.empty();
+                }).build();
+    }
+
+    private CommandSpec createReloadSpec() {
+        return CommandSpec.builder()
+                .description(Texts.of("Reloads the configuration."))
+                .permission(this.container.getId() + ".command.reload")
+                .executor((src, args) -> {
+                    try {
+                        this.reload();
+                    } catch (IOException | RuntimeException e) {
+                        this.logger.error("Failed to reload the configuration.", e);
+                        src.sendMessage(Texts.of(TextColors.RED, "Failed to reload the configuration: ", e.getMessage()));
+                        return CommandResult.empty();
+                    }
+                    src.sendMessage(Texts.of(TextColors.GREEN, "Reloaded the configuration."));
+                    return CommandResult.success();
+                }).build();
+    }
+
+    private static String millis(long micros) {
+        return micros < 0 ? "-" : String.format(Locale.ENGLISH, "%.1fms", micros / 1000.0);
+    }
+
+    @Subscribe
+    public void onServerStarted(ServerStartedEvent event) {
+        warmer = ConnectionWarmer.start();
+    }
+
+    @Subscribe
+    public void onServerStopping(ServerStoppingEvent event) {
+        if (this.watcher != null) {
+            this.watcher.stop();
+        }
+        if (this.warmer != null) {
+            this.warmer.stop();
+        }
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+        if (this.diskCache != null) {
+            this.diskCache.close();
+        }
+        if (this.delivery != null) {
+            this.delivery.shutdown();
+        }
+        if (this.metrics != null) {
+            this.metrics.unregister();
+        }
+        if (this.completer != null) {
+            this.completer.shutdown();
+        }
     }
 
     public SearchEngine putEngine(SearchEngine engine) {
         this.engines.add(engine);
         return engine;
     }
+
+    /**
+     * Gets the registered {@link SearchEngine}s.
+     * @return The engines
+     */
+    public Set<SearchEngine> getEngines() {
+        return Collections.unmodifiableSet(this.engines);
+    }
 }
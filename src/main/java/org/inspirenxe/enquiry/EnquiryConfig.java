@@ -0,0 +1,294 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.Types;
+import org.inspirenxe.enquiry.search.LineTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the configuration.
+ * <p>
+ * A new snapshot is taken every time the configuration is loaded, so holding on to one never sees a partially reloaded configuration.
+ * Options read per search take effect on reload, options sizing pools and caches are read once at startup.
+ */
+public final class EnquiryConfig {
+
+    private final ConfigurationNode enginesNode;
+    private final ImmutableMap<String, EngineConfig> engines;
+    // Engines without options, such as engines of other plugins, read once on their first lookup
+    private final ConcurrentMap<String, EngineConfig> defaultEngines = Maps.newConcurrentMap();
+    private final boolean completionEnabled;
+    private final int completionMaxEntries;
+    private final long completionSaveInterval;
+    private final boolean diskCacheEnabled;
+    private final long diskCacheMaxEntries;
+    private final long diskCacheMaxSize;
+    private final long diskCacheTtl;
+    private final int deliveryMaxPerTick;
+    private final long deliveryTickBudget;
+    private final int executorQueueSize;
+    private final int executorThreads;
+    private final long metaDeadline;
+    private final int metaMaxResults;
+    private final LineTemplate metaLineTemplate;
+    private final boolean pagingPrefetch;
+    private final long pagingSessionTimeout;
+    private final double playerRateLimitPerSecond;
+    private final int playerRateLimitBurst;
+    private final boolean watch;
+    private final boolean streaming;
+    private final int connectTimeout;
+    private final int maxConnectionsPerHost;
+    private final int readTimeout;
+    private final boolean warmupEnabled;
+    private final ImmutableList<String> warmupEngines;
+    private final long warmupIdle;
+    private final long warmupInterval;
+
+    private EnquiryConfig(ConfigurationNode root) {
+        this.enginesNode = root.getNode("engines");
+        final ImmutableMap.Builder<String, EngineConfig> engines = ImmutableMap.builder();
+        for (Map.Entry<Object, ? extends ConfigurationNode> entry : this.enginesNode.getChildrenMap().entrySet()) {
+            engines.put(entry.getKey().toString(), EngineConfig.of(entry.getValue()));
+        }
+        this.engines = engines.build();
+        final ConfigurationNode options = root.getNode("options");
+        this.completionEnabled = options.getNode("completion", "enabled").getBoolean(true);
+        this.completionMaxEntries = Math.max(1, options.getNode("completion", "max-entries").getInt(10000));
+        this.completionSaveInterval = Math.max(1, options.getNode("completion", "save-interval").getLong(300));
+        this.diskCacheEnabled = options.getNode("disk-cache", "enabled").getBoolean(true);
+        this.diskCacheMaxEntries = options.getNode("disk-cache", "max-entries").getInt(16384);
+        this.diskCacheMaxSize = options.getNode("disk-cache", "max-size").getLong(32) * 1024 * 1024;
+        this.diskCacheTtl = TimeUnit.SECONDS.toMillis(options.getNode("disk-cache", "ttl").getLong(86400));
+        this.deliveryMaxPerTick = Math.max(1, options.getNode("delivery", "max-per-tick").getInt(20));
+        this.deliveryTickBudget = options.getNode("delivery", "tick-budget").getLong(2000);
+        this.executorQueueSize = Math.max(1, options.getNode("executor", "queue-size").getInt(64));
+        this.executorThreads = Math.max(1, options.getNode("executor", "threads").getInt(8));
+        this.metaDeadline = options.getNode("meta", "deadline").getLong(2000);
+        this.metaMaxResults = options.getNode("meta", "max-results").getInt(10);
+        this.metaLineTemplate = LineTemplate.compile(options.getNode("meta", "style", "line-format")
+                .getString("&f${resultNumber}. &d${resultTitle}"));
+        this.pagingPrefetch = options.getNode("paging", "prefetch").getBoolean(false);
+        this.pagingSessionTimeout = options.getNode("paging", "session-timeout").getLong(900);
+        this.playerRateLimitPerSecond = options.getNode("rate-limit", "player", "per-second").getDouble(0.5);
+        this.playerRateLimitBurst = options.getNode("rate-limit", "player", "burst").getInt(3);
+        this.watch = options.getNode("reload", "watch").getBoolean(false);
+        this.streaming = options.getNode("streaming", "enabled").getBoolean(false);
+        this.connectTimeout = options.getNode("transport", "connect-timeout").getInt(5000);
+        this.maxConnectionsPerHost = options.getNode("transport", "max-connections-per-host").getInt(8);
+        this.readTimeout = options.getNode("transport", "read-timeout").getInt(10000);
+        this.warmupEnabled = options.getNode("warmup", "enabled").getBoolean(false);
+        this.warmupEngines = ImmutableList.copyOf(options.getNode("warmup", "engines").getList(Types::asString));
+        this.warmupIdle = TimeUnit.SECONDS.toMillis(options.getNode("warmup", "idle").getLong(300));
+        this.warmupInterval = TimeUnit.SECONDS.toMillis(Math.max(1, options.getNode("warmup", "interval").getLong(4)));
+    }
+
+    /**
+     * Takes a snapshot of the configuration.
+     * @param root The root node
+     * @return The {@link EnquiryConfig}
+     */
+    public static EnquiryConfig of(ConfigurationNode root) {
+        return new EnquiryConfig(root);
+    }
+
+    /**
+     * Gets the options of an engine.
+     * @param id The id of the engine
+     * @return The options, with default values if the engine has no options
+     */
+    public EngineConfig getEngine(String id) {
+        final EngineConfig engine = this.engines.get(id);
+        return engine == null ? this.defaultEngines.computeIfAbsent(id, key -> EngineConfig.of(this.enginesNode.getNode(key))) : engine;
+    }
+
+    public boolean isCompletionEnabled() {
+        return completionEnabled;
+    }
+
+    public int getCompletionMaxEntries() {
+        return completionMaxEntries;
+    }
+
+    /**
+     * Gets the time between saves of the queries completions are made from.
+     * @return The interval in seconds
+     */
+    public long getCompletionSaveInterval() {
+        return completionSaveInterval;
+    }
+
+    public boolean isDiskCacheEnabled() {
+        return diskCacheEnabled;
+    }
+
+    public long getDiskCacheMaxEntries() {
+        return diskCacheMaxEntries;
+    }
+
+    /**
+     * Gets the size the disk cache is trimmed to.
+     * @return The maximum size in bytes
+     */
+    public long getDiskCacheMaxSize() {
+        return diskCacheMaxSize;
+    }
+
+    /**
+     * Gets the longest time entries are kept on disk, an entry is never kept longer than its engine caches results for.
+     * @return The time to live in milliseconds
+     */
+    public long getDiskCacheTtl() {
+        return diskCacheTtl;
+    }
+
+    public int getDeliveryMaxPerTick() {
+        return deliveryMaxPerTick;
+    }
+
+    /**
+     * Gets the time delivery may spend in a tick.
+     * @return The budget in microseconds
+     */
+    public long getDeliveryTickBudget() {
+        return deliveryTickBudget;
+    }
+
+    public int getExecutorQueueSize() {
+        return executorQueueSize;
+    }
+
+    public int getExecutorThreads() {
+        return executorThreads;
+    }
+
+    /**
+     * Gets the time a meta search waits for the slower engines.
+     * @return The deadline in milliseconds
+     */
+    public long getMetaDeadline() {
+        return metaDeadline;
+    }
+
+    public int getMetaMaxResults() {
+        return metaMaxResults;
+    }
+
+    public LineTemplate getMetaLineTemplate() {
+        return metaLineTemplate;
+    }
+
+    public boolean isPagingPrefetch() {
+        return pagingPrefetch;
+    }
+
+    /**
+     * Gets the time a search session is kept after it was last used.
+     * @return The timeout in seconds
+     */
+    public long getPagingSessionTimeout() {
+        return pagingSessionTimeout;
+    }
+
+    public double getPlayerRateLimitPerSecond() {
+        return playerRateLimitPerSecond;
+    }
+
+    public int getPlayerRateLimitBurst() {
+        return playerRateLimitBurst;
+    }
+
+    /**
+     * Gets if the configuration file is watched and reloaded when it changes.
+     * @return True if watched
+     */
+    public boolean isWatch() {
+        return watch;
+    }
+
+    /**
+     * Gets if results are sent to the player one at a time as they are read, rather than once the search completed.
+     * @return True if streamed
+     */
+    public boolean isStreamingEnabled() {
+        return streaming;
+    }
+
+    /**
+     * Gets the time to wait for a connection.
+     * @return The timeout in milliseconds
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Gets the time to wait for a response.
+     * @return The timeout in milliseconds
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public boolean isWarmupEnabled() {
+        return warmupEnabled;
+    }
+
+    /**
+     * Gets the ids of the engines whose connections are warmed.
+     * @return The ids
+     */
+    public ImmutableList<String> getWarmupEngines() {
+        return warmupEngines;
+    }
+
+    /**
+     * Gets the time connections of an engine are kept warm after its last search.
+     * @return The idle time in milliseconds
+     */
+    public long getWarmupIdle() {
+        return warmupIdle;
+    }
+
+    /**
+     * Gets the time between keep-alive pings, shorter than the 5 seconds the JVM keeps an idle connection open for by default.
+     * @return The interval in milliseconds
+     */
+    public long getWarmupInterval() {
+        return warmupInterval;
+    }
+}
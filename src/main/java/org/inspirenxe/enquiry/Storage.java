@@ -42,7 +42,8 @@ import java.util.Queue;
 public class Storage {
 
     private ConfigurationLoader<CommentedConfigurationNode> loader;
-    private CommentedConfigurationNode rootNode;
+    private volatile CommentedConfigurationNode rootNode;
+    private volatile EnquiryConfig config;
     private final Map<String, Object> defaultNodes = Maps.newTreeMap();
 
     public Storage(File configuration, ConfigurationLoader<CommentedConfigurationNode> loader) throws IOException {
@@ -58,30 +59,154 @@ public class Storage {
 
         this.registerDefaultNode("engines.bing.auth.account-key", "");
         this.registerDefaultNode("engines.bing.options.aliases", ImmutableList.of("bing", "b"));
+        this.registerDefaultNode("engines.bing.options.cache.enabled", true);
+        this.registerDefaultNode("engines.bing.options.cache.max-entries", 256);
+        this.registerDefaultNode("engines.bing.options.cache.max-weight", 0);
+        this.registerDefaultNode("engines.bing.options.cache.ttl", 300);
+        this.registerDefaultNode("engines.bing.options.circuit-breaker.error-rate", 0.5);
+        this.registerDefaultNode("engines.bing.options.circuit-breaker.failure-threshold", 5);
+        this.registerDefaultNode("engines.bing.options.circuit-breaker.open-duration", 30);
+        this.registerDefaultNode("engines.bing.options.circuit-breaker.window", 20);
+        this.registerDefaultNode("engines.bing.options.hedge.fallback", "");
+        this.registerDefaultNode("engines.bing.options.hedge.min-delay", 500);
+        this.registerDefaultNode("engines.bing.options.hedge.percentile", 95);
+        this.registerDefaultNode("engines.bing.options.max-concurrent", 3);
+        this.registerDefaultNode("engines.bing.options.max-results", 10);
+        this.registerDefaultNode("engines.bing.options.normalize.send-normalized", false);
+        this.registerDefaultNode("engines.bing.options.normalize.steps", ImmutableList.of("nfkc", "case-fold", "whitespace"));
+        this.registerDefaultNode("engines.bing.options.rate-limit.burst", 1);
+        this.registerDefaultNode("engines.bing.options.rate-limit.daily-quota", 0);
+        this.registerDefaultNode("engines.bing.options.rate-limit.per-second", 0);
         this.registerDefaultNode("engines.bing.options.style.line-format", "&f${resultNumber}. &d${resultTitle}");
         this.registerDefaultNode("engines.duckduckgo.options.aliases", ImmutableList.of("duckduckgo", "ddg", "d"));
+        this.registerDefaultNode("engines.duckduckgo.options.cache.enabled", true);
+        this.registerDefaultNode("engines.duckduckgo.options.cache.max-entries", 256);
+        this.registerDefaultNode("engines.duckduckgo.options.cache.max-weight", 0);
+        this.registerDefaultNode("engines.duckduckgo.options.cache.ttl", 300);
+        this.registerDefaultNode("engines.duckduckgo.options.circuit-breaker.error-rate", 0.5);
+        this.registerDefaultNode("engines.duckduckgo.options.circuit-breaker.failure-threshold", 5);
+        this.registerDefaultNode("engines.duckduckgo.options.circuit-breaker.open-duration", 30);
+        this.registerDefaultNode("engines.duckduckgo.options.circuit-breaker.window", 20);
+        this.registerDefaultNode("engines.duckduckgo.options.hedge.fallback", "");
+        this.registerDefaultNode("engines.duckduckgo.options.hedge.min-delay", 500);
+        this.registerDefaultNode("engines.duckduckgo.options.hedge.percentile", 95);
+        this.registerDefaultNode("engines.duckduckgo.options.max-concurrent", 3);
+        this.registerDefaultNode("engines.duckduckgo.options.max-results", 10);
+        this.registerDefaultNode("engines.duckduckgo.options.normalize.send-normalized", false);
+        this.registerDefaultNode("engines.duckduckgo.options.normalize.steps", ImmutableList.of("nfkc", "case-fold", "whitespace"));
+        this.registerDefaultNode("engines.duckduckgo.options.rate-limit.burst", 1);
+        this.registerDefaultNode("engines.duckduckgo.options.rate-limit.daily-quota", 0);
+        this.registerDefaultNode("engines.duckduckgo.options.rate-limit.per-second", 0);
         this.registerDefaultNode("engines.duckduckgo.options.style.line-format", "&f${resultNumber}. &d${resultTitle}");
         this.registerDefaultNode("engines.google.auth.api-key", "");
         this.registerDefaultNode("engines.google.auth.search-id", "");
         this.registerDefaultNode("engines.google.options.aliases", ImmutableList.of("google", "g"));
+        this.registerDefaultNode("engines.google.options.cache.enabled", true);
+        this.registerDefaultNode("engines.google.options.cache.max-entries", 256);
+        this.registerDefaultNode("engines.google.options.cache.max-weight", 0);
+        this.registerDefaultNode("engines.google.options.cache.ttl", 300);
+        this.registerDefaultNode("engines.google.options.circuit-breaker.error-rate", 0.5);
+        this.registerDefaultNode("engines.google.options.circuit-breaker.failure-threshold", 5);
+        this.registerDefaultNode("engines.google.options.circuit-breaker.open-duration", 30);
+        this.registerDefaultNode("engines.google.options.circuit-breaker.window", 20);
+        this.registerDefaultNode("engines.google.options.hedge.fallback", "");
+        this.registerDefaultNode("engines.google.options.hedge.min-delay", 500);
+        this.registerDefaultNode("engines.google.options.hedge.percentile", 95);
+        this.registerDefaultNode("engines.google.options.max-concurrent", 3);
+        this.registerDefaultNode("engines.google.options.max-results", 10);
+        this.registerDefaultNode("engines.google.options.normalize.send-normalized", false);
+        this.registerDefaultNode("engines.google.options.normalize.steps", ImmutableList.of("nfkc", "case-fold", "whitespace"));
+        this.registerDefaultNode("engines.google.options.rate-limit.burst", 1);
+        this.registerDefaultNode("engines.google.options.rate-limit.daily-quota", 100);
+        this.registerDefaultNode("engines.google.options.rate-limit.per-second", 0);
         this.registerDefaultNode("engines.google.options.style.line-format", "&f${resultNumber}. &d${resultTitle}");
+        this.registerDefaultNode("engines.local.options.aliases", ImmutableList.of("local", "l"));
+        this.registerDefaultNode("engines.local.options.base-url", "");
+        this.registerDefaultNode("engines.local.options.cache.enabled", false);
+        this.registerDefaultNode("engines.local.options.directory", "enquiry-local");
+        this.registerDefaultNode("engines.local.options.max-results", 10);
+        this.registerDefaultNode("engines.local.options.normalize.send-normalized", false);
+        this.registerDefaultNode("engines.local.options.normalize.steps", ImmutableList.of("nfkc", "case-fold", "whitespace"));
+        this.registerDefaultNode("engines.local.options.style.line-format", "&f${resultNumber}. &d${resultTitle}");
+        this.registerDefaultNode("options.completion.enabled", true);
+        this.registerDefaultNode("options.completion.max-entries", 10000);
+        this.registerDefaultNode("options.completion.save-interval", 300);
+        this.registerDefaultNode("options.disk-cache.enabled", true);
+        this.registerDefaultNode("options.disk-cache.max-entries", 16384);
+        this.registerDefaultNode("options.disk-cache.max-size", 32);
+        this.registerDefaultNode("options.disk-cache.ttl", 86400);
+        this.registerDefaultNode("options.delivery.max-per-tick", 20);
+        this.registerDefaultNode("options.delivery.tick-budget", 2000);
+        this.registerDefaultNode("options.executor.queue-size", 64);
+        this.registerDefaultNode("options.executor.threads", 8);
+        this.registerDefaultNode("options.meta.deadline", 2000);
+        this.registerDefaultNode("options.meta.max-results", 10);
+        this.registerDefaultNode("options.meta.style.line-format", "&f${resultNumber}. &d${resultTitle}");
+        this.registerDefaultNode("options.paging.prefetch", false);
+        this.registerDefaultNode("options.paging.session-timeout", 900);
+        this.registerDefaultNode("options.rate-limit.player.burst", 3);
+        this.registerDefaultNode("options.rate-limit.player.per-second", 0.5);
+        this.registerDefaultNode("options.reload.watch", false);
+        this.registerDefaultNode("options.streaming.enabled", false);
+        this.registerDefaultNode("options.transport.connect-timeout", 5000);
+        this.registerDefaultNode("options.transport.max-connections-per-host", 8);
+        this.registerDefaultNode("options.transport.read-timeout", 10000);
+        this.registerDefaultNode("options.warmup.enabled", false);
+        this.registerDefaultNode("options.warmup.engines", ImmutableList.of("bing", "duckduckgo", "google"));
+        this.registerDefaultNode("options.warmup.idle", 300);
+        this.registerDefaultNode("options.warmup.interval", 4);
     }
 
     public Storage load() throws IOException {
-        defaultNodes.entrySet().stream().filter(entry -> entry.getValue() != null).forEach(entry -> {
-            final CommentedConfigurationNode node = this.getChildNode(entry.getKey());
+        if (this.applyDefaults(this.rootNode)) {
+            this.loader.save(this.rootNode);
+        }
+        this.config = EnquiryConfig.of(this.rootNode);
+        return this;
+    }
+
+    /**
+     * Reads the configuration file again and replaces the snapshot returned by {@link #getConfig()}.
+     * @return The new {@link EnquiryConfig}
+     * @throws IOException If the file could not be read or saved
+     */
+    public synchronized EnquiryConfig reload() throws IOException {
+        final CommentedConfigurationNode node = this.loader.load();
+        if (this.applyDefaults(node)) {
+            this.loader.save(node);
+        }
+        this.rootNode = node;
+        this.config = EnquiryConfig.of(node);
+        return this.config;
+    }
+
+    /**
+     * Fills in missing default nodes and removes nodes that are not registered.
+     * @param root The root node
+     * @return True if the node was changed and needs saving
+     */
+    private boolean applyDefaults(CommentedConfigurationNode root) {
+        boolean changed = false;
+        for (Map.Entry<String, Object> entry : this.defaultNodes.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            final CommentedConfigurationNode node = root.getNode((Object[]) entry.getKey().split("\\."));
             if (node.getValue() == null) {
-                this.getChildNode(entry.getKey()).setValue(entry.getValue());
+                node.setValue(entry.getValue());
+                changed = true;
             }
-        });
-        final Queue<CommentedConfigurationNode> queue = Queues.newConcurrentLinkedQueue();
-        queue.add(this.rootNode);
+        }
+        final Queue<CommentedConfigurationNode> queue = Queues.newArrayDeque();
+        queue.add(root);
         while (!queue.isEmpty()) {
             final CommentedConfigurationNode node = queue.remove();
             if (node.getParent() != null && node.getPath() != null && node.getValue() != null) {
                 final String path = Joiner.on(",").skipNulls().join(node.getPath()).replace(",", ".");
                 if (!this.defaultNodes.containsKey(path)) {
                     node.setValue(null);
+                    changed = true;
+                    continue;
                 }
             }
             if (node.hasMapChildren()) {
@@ -90,9 +215,15 @@ public class Storage {
                 }
             }
         }
-        this.loader.save(rootNode);
-        this.loader.load();
-        return this;
+        return changed;
+    }
+
+    /**
+     * Gets the snapshot of the configuration taken when it was last loaded.
+     * @return The {@link EnquiryConfig}
+     */
+    public EnquiryConfig getConfig() {
+        return this.config;
     }
 
     /**
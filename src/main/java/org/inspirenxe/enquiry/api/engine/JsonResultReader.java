@@ -0,0 +1,197 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.api.engine;
+
+import com.google.common.base.Strings;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Reads {@link SearchResult}s from a JSON response as a stream.
+ * <p>
+ * Only the objects along the path to the results array and the title, description and url of each result are read, every other value
+ * is skipped without being bound. Reading stops as soon as the limit is reached, leaving the rest of the response unread.
+ * <p>
+ * The fields are appended to {@link SearchResults} as they are read, no object is created per result.
+ */
+public class JsonResultReader {
+
+    private final String titleField;
+    private final String descriptionField;
+    private final String urlField;
+    private final String[] path;
+
+    /**
+     * Creates a reader.
+     * @param titleField The name of the title field or null if results have no title
+     * @param descriptionField The name of the description field or null if results have no description
+     * @param urlField The name of the url field, results without an url are skipped
+     * @param path The names of the fields leading from the root object to the array of results
+     */
+    public JsonResultReader(String titleField, String descriptionField, String urlField, String... path) {
+        this.titleField = titleField;
+        this.descriptionField = descriptionField;
+        this.urlField = urlField;
+        this.path = path;
+    }
+
+    /**
+     * Reads the results.
+     * @param reader The reader of the response body
+     * @param limit The maximum amount of results to read
+     * @return The results
+     * @throws IOException Thrown when the response is not valid JSON
+     */
+    public SearchResults read(Reader reader, int limit) throws IOException {
+        return this.read(reader, 0, limit);
+    }
+
+    /**
+     * Reads the results after skipping some, for APIs returning every page at once.
+     * @param reader The reader of the response body
+     * @param skip The amount of results to skip
+     * @param limit The maximum amount of results to read
+     * @return The results
+     * @throws IOException Thrown when the response is not valid JSON
+     */
+    public SearchResults read(Reader reader, int skip, int limit) throws IOException {
+        return this.read(reader, skip, limit, null);
+    }
+
+    /**
+     * Reads the results after skipping some, handing each result to the subscriber as soon as it is read.
+     * @param reader The reader of the response body
+     * @param skip The amount of results to skip
+     * @param limit The maximum amount of results to read
+     * @param subscriber The subscriber of the results or null
+     * @return The results
+     * @throws IOException Thrown when the response is not valid JSON
+     */
+    public SearchResults read(Reader reader, int skip, int limit, Consumer<? super SearchResult> subscriber) throws IOException {
+        final JsonReader json = new JsonReader(reader);
+        json.setLenient(true);
+        if (!this.seek(json, 0) || json.peek() != JsonToken.BEGIN_ARRAY) {
+            return SearchResults.EMPTY;
+        }
+        final SearchResults.Builder results = SearchResults.builder(Math.min(limit, 16));
+        json.beginArray();
+        while (results.size() < limit && json.hasNext()) {
+            // Skipped results are read all the same, only to be discarded
+            final SearchResults.Builder target = skip > 0 ? null : results;
+            if (this.readResult(json, target, subscriber)) {
+                skip--;
+            }
+        }
+        return results.build();
+    }
+
+    private boolean seek(JsonReader json, int depth) throws IOException {
+        if (depth == this.path.length) {
+            return true;
+        }
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            return false;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            if (json.nextName().equals(this.path[depth])) {
+                return this.seek(json, depth + 1);
+            }
+            json.skipValue();
+        }
+        json.endObject();
+        return false;
+    }
+
+    private boolean readResult(JsonReader json, SearchResults.Builder results, Consumer<? super SearchResult> subscriber)
+            throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return false;
+        }
+        String title = null, description = null, url = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (json.peek() != JsonToken.STRING) {
+                json.skipValue();
+            } else if (name.equals(this.titleField)) {
+                title = json.nextString();
+            } else if (name.equals(this.descriptionField)) {
+                description = json.nextString();
+            } else if (name.equals(this.urlField)) {
+                url = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
+        if (results != null) {
+            results.add(title == null ? url : title, description, url);
+            if (subscriber != null) {
+                subscriber.accept(new ReadResult(title == null ? url : title, description, url));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A result handed to a subscriber, read the same as it is from {@link SearchResults}.
+     */
+    private static final class ReadResult implements SearchResult {
+
+        private final String title;
+        private final String description;
+        private final String url;
+
+        ReadResult(String title, String description, String url) {
+            this.title = Strings.emptyToNull(title);
+            this.description = Strings.emptyToNull(description);
+            this.url = url;
+        }
+
+        @Override
+        public String getTitle() {
+            return title;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+    }
+}
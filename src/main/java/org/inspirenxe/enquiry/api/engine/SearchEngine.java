@@ -25,97 +25,114 @@
 package org.inspirenxe.enquiry.api.engine;
 
 import static org.spongepowered.api.util.command.args.GenericArguments.playerOrSource;
-import static org.spongepowered.api.util.command.args.GenericArguments.remainingJoinedStrings;
 import static org.spongepowered.api.util.command.args.GenericArguments.seq;
 
 import com.github.kevinsawicki.http.HttpRequest;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
+import org.inspirenxe.enquiry.EngineConfig;
 import org.inspirenxe.enquiry.Enquiry;
 import org.inspirenxe.enquiry.api.event.SearchEngineRegisterEvent;
 import org.inspirenxe.enquiry.api.event.SearchEngineRegistrationEvent;
-import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
-import org.inspirenxe.enquiry.api.event.SearchPreEvent;
-import org.inspirenxe.enquiry.api.event.SearchSuccessEvent;
+import org.inspirenxe.enquiry.api.http.HttpTransport;
+import org.inspirenxe.enquiry.cache.DiskResultCache;
+import org.inspirenxe.enquiry.cache.QueryNormalizer;
+import org.inspirenxe.enquiry.cache.ResultCache;
+import org.inspirenxe.enquiry.cache.SearchCoalescer;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+import org.inspirenxe.enquiry.search.CircuitBreaker;
+import org.inspirenxe.enquiry.search.HedgePolicy;
+import org.inspirenxe.enquiry.search.LatencyTracker;
+import org.inspirenxe.enquiry.search.LineTemplate;
+import org.inspirenxe.enquiry.search.QueryElement;
+import org.inspirenxe.enquiry.search.RateLimiter;
+import org.inspirenxe.enquiry.search.SearchTask;
 import org.spongepowered.api.entity.player.Player;
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.Texts;
-import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
-import org.spongepowered.api.util.TextMessageException;
 import org.spongepowered.api.util.command.CommandResult;
 import org.spongepowered.api.util.command.CommandSource;
 import org.spongepowered.api.util.command.spec.CommandSpec;
 
 import java.io.IOException;
-import java.net.URL;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public abstract class SearchEngine {
 
+    private static final Pattern PAGE_PATTERN = Pattern.compile("^(.+?)\\s+page\\s+(\\d{1,3})$", Pattern.CASE_INSENSITIVE);
+
     private final PluginContainer plugin;
     private final String id;
     private final List<String> aliases = Lists.newArrayList();
-    private final CommandSpec commandSpec;
+    // Built once when the commands of registered engines are registered, it is shared by the engine's command and its /eq child
+    private final Supplier<CommandSpec> commandSpec = Suppliers.memoize(this::createCommandSpec);
+    // Built on first use so constructing an engine stays cheap and an engine cancelled on registration never builds them
+    private final Supplier<ResultCache> cache = Suppliers.memoize(() -> ResultCache.of(this.getId()));
+    private final SearchCoalescer coalescer = new SearchCoalescer();
+    private final LatencyTracker latency = new LatencyTracker(128);
+    private final Supplier<HedgePolicy> hedge = Suppliers.memoize(() -> HedgePolicy.of(this.getId()));
+    private final Supplier<CircuitBreaker> breaker = Suppliers.memoize(() -> CircuitBreaker.of(this));
+    private final Supplier<RateLimiter> rateLimiter = Suppliers.memoize(() -> RateLimiter.of(this));
+    private final SearchMetrics metrics = new SearchMetrics();
 
-    @SuppressWarnings("deprecation")
     public SearchEngine(PluginContainer plugin, String id, String... aliases) {
+        if (!overrides(getClass(), "getResults", String.class) && !overrides(getClass(), "search", String.class)
+                && !overrides(getClass(), "search", String.class, int.class)
+                && !overrides(getClass(), "search", String.class, int.class, Consumer.class)) {
+            // The defaults of the search methods call each other, without an override a search would never complete
+            throw new IllegalStateException(getClass().getName() + " must override search(String) or another search method");
+        }
         this.plugin = plugin;
         this.id = id;
         Collections.addAll(this.aliases, aliases);
+    }
+
+    private static boolean overrides(Class<?> type, String name, Class<?>... parameters) {
+        try {
+            return type.getMethod(name, parameters).getDeclaringClass() != SearchEngine.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private CommandSpec createCommandSpec() {
         final SearchEngine engine = this;
-        commandSpec = CommandSpec.builder()
+        return CommandSpec.builder()
                 .description(Texts.of("Searches ", getName(), " for the query provided."))
-                .arguments(seq(playerOrSource(Texts.of("player"), Enquiry.instance.game)), remainingJoinedStrings(Texts.of("search")))
-                .permission(plugin.getId() + ".command.search." + getId())
+                .arguments(seq(playerOrSource(Texts.of("player"), Enquiry.instance.game)), new QueryElement(Texts.of("search")))
+                .permission(this.plugin.getId() + ".command.search." + getId())
                 .executor((src, args) -> {
-                    Enquiry.instance.game.getScheduler().createTaskBuilder().async().execute(() -> {
-                        final CommandSource target = args.<Player>getOne("player").get();
-                        final String query = args.<String>getOne("search").get();
-                        final SearchPreEvent preEvent = new SearchPreEvent(target, engine, query);
-
-                        if (!Enquiry.instance.game.getEventManager().post(preEvent)) {
-                            try {
-                                final List<? extends SearchResult> results = preEvent.engine.getResults(query);
-                                final SearchSuccessEvent event = new SearchSuccessEvent(target, preEvent.engine, query, results);
-                                if (!Enquiry.instance.game.getEventManager().post(event)) {
-                                    target.sendMessage(Texts.of(
-                                            "(", Texts.of(event.engine.getName()).builder()
-                                                    .onClick(TextActions.openUrl(new URL(event.engine.getUrl())))
-                                                    .onHover(TextActions.showText(Texts.of(event.engine.getUrl())))
-                                                    .build(),
-                                            TextColors.RESET, ") Result(s) for: ", TextColors.YELLOW, query));
-                                    int i = 1;
-                                    for (SearchResult result : event.results) {
-                                        final String resultMessage = Enquiry.instance.storage.getChildNode("engines." + event.engine.getId() +
-                                                ".options.style.line-format").getString()
-                                                .replace("${resultNumber}", Integer.toString(i++))
-                                                .replace("${resultTitle}", result.getTitle())
-                                                .trim();
-                                        final Text message = Texts.legacy('&').from(resultMessage).builder()
-                                                .onClick(TextActions.openUrl(new URL(result.getUrl())))
-                                                .onHover(result.getDescription() != null && !result.getDescription().isEmpty() ?
-                                                        TextActions.showText(Texts.of(result.getDescription().replaceAll("[^\\x20-\\x7e]", ""))) :
-                                                        null)
-                                                .build();
-                                        target.sendMessage(message);
-                                    }
-                                }
-                            } catch (IOException | TextMessageException e) {
-                                if (!Enquiry.instance.game.getEventManager().post(new SearchFailureEvent(target, preEvent.engine, query))) {
-                                    if (src instanceof Player) {
-                                        src.sendMessage(Texts.of("An error occurred while attempting to search ", preEvent.engine.getName(), " for ",
-                                                TextColors.YELLOW, query));
-                                    }
-                                    Enquiry.instance.logger
-                                            .warn("An error occurred while attempting to search " + Texts.toPlain(preEvent.engine.getName()) +
-                                                    " for " + query, e);
-                                }
-                            }
-                        }
-                    }).submit(plugin);
+                    final CommandSource target = args.<Player>getOne("player").get();
+                    String query = args.<String>getOne("search").get();
+                    int page = 1;
+                    final Matcher matcher = PAGE_PATTERN.matcher(query);
+                    if (matcher.matches()) {
+                        query = matcher.group(1);
+                        page = Math.max(1, Integer.parseInt(matcher.group(2)));
+                    }
+                    if (page > 1 && !engine.hasPages()) {
+                        src.sendMessage(Texts.of(engine.getName(), TextColors.RED, " only has a single page of results."));
+                        return CommandResult.empty();
+                    }
+                    try {
+                        Enquiry.instance.executor.execute(new SearchTask(src, target, engine, query, page));
+                    } catch (RejectedExecutionException e) {
+                        src.sendMessage(Texts.of(TextColors.RED, "Enquiry is busy, please try again shortly."));
+                        return CommandResult.empty();
+                    }
                     return CommandResult.success();
                 }).build();
     }
@@ -133,6 +150,15 @@ public abstract class SearchEngine {
         return this;
     }
 
+    /**
+     * Called once the configuration was reloaded.
+     * <p>
+     * Options are read from {@link #getConfig()} when they are used so nothing needs doing by default, engines holding state built from
+     * their options override this to rebuild it.
+     */
+    public void reload() {
+    }
+
     /**
      * Gets the id of the engine
      * @return The ID
@@ -149,12 +175,113 @@ public abstract class SearchEngine {
         return this.aliases;
     }
 
+    /**
+     * Gets the maximum amount of results to show for a search.
+     * @return The maximum amount of results
+     */
+    public int getMaxResults() {
+        return this.getConfig().getMaxResults();
+    }
+
+    /**
+     * Gets the amount of results a full page of the engine holds.
+     * <p>
+     * By default this is {@link #getMaxResults()}, engines whose API returns fewer results per request override this.
+     * @return The amount of results of a page
+     */
+    public int getPageSize() {
+        return this.getMaxResults();
+    }
+
+    /**
+     * Gets the options of the engine from the current configuration.
+     * @return The {@link EngineConfig}
+     */
+    public EngineConfig getConfig() {
+        return Enquiry.instance.storage.getConfig().getEngine(this.id);
+    }
+
+    /**
+     * Gets the normalizer producing the canonical form of queries, queries with the same canonical form share cached results.
+     * <p>
+     * Defaults to the pipeline configured under normalize.steps, engines may override this when their upstream treats queries
+     * differently.
+     * @return The {@link QueryNormalizer}
+     */
+    public QueryNormalizer getNormalizer() {
+        return this.getConfig().getNormalizer();
+    }
+
     /**
      * Gets the {@link CommandSpec} of the engine.
      * @return The {@link CommandSpec}
      */
     public CommandSpec getCommandSpec() {
-        return commandSpec;
+        return commandSpec.get();
+    }
+
+    /**
+     * Gets the {@link ResultCache} of the engine.
+     * @return The {@link ResultCache}
+     */
+    public ResultCache getCache() {
+        return cache.get();
+    }
+
+    /**
+     * Gets the {@link SearchCoalescer} of the engine.
+     * @return The {@link SearchCoalescer}
+     */
+    public SearchCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Gets the {@link LatencyTracker} of the engine's upstream calls.
+     * @return The {@link LatencyTracker}
+     */
+    public LatencyTracker getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the {@link HedgePolicy} of the engine.
+     * @return The {@link HedgePolicy}
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedge.get();
+    }
+
+    /**
+     * Gets the {@link CircuitBreaker} of the engine.
+     * @return The {@link CircuitBreaker}
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return breaker.get();
+    }
+
+    /**
+     * Gets the {@link RateLimiter} of the engine.
+     * @return The {@link RateLimiter}
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter.get();
+    }
+
+    /**
+     * Gets the {@link LineTemplate} result lines of the engine are rendered with.
+     * @return The {@link LineTemplate}
+     */
+    public LineTemplate getLineTemplate() {
+        return this.getConfig().getLineTemplate();
+    }
+
+    /**
+     * Gets the {@link SearchMetrics} of the engine.
+     * @return The {@link SearchMetrics}
+     */
+    public SearchMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -171,6 +298,14 @@ public abstract class SearchEngine {
      */
     public abstract Text getName();
 
+    /**
+     * Gets the name of the engine as plain text, for log and error messages.
+     * @return The plain name
+     */
+    public String getPlainName() {
+        return Texts.toPlain(getName());
+    }
+
     /**
      * Gets the URL of the engine's website.
      * @return The engine's website URL
@@ -185,19 +320,293 @@ public abstract class SearchEngine {
 
     /**
      * Gets the {@link HttpRequest} of the engine.
+     * <p>
+     * Requests should be created through {@link HttpTransport#get(CharSequence, Object...)} so they share pooled connections. Engines that
+     * do not search over HTTP, such as engines searching documents on the server, need not override this.
+     * @param query The query
+     * @return The {@link HttpRequest} or null if the engine makes no requests
+     */
+    public HttpRequest getRequest(String query) {
+        return null;
+    }
+
+    /**
+     * Gets the {@link HttpRequest} of a page of results of the engine.
+     * <p>
+     * By default this is the request of the first page, engines that are able to page override this along with {@link #hasPages()}.
      * @param query The query
+     * @param page The page, starting at 1
      * @return The {@link HttpRequest}
      */
-    public abstract HttpRequest getRequest(String query);
+    public HttpRequest getRequest(String query, int page) {
+        return getRequest(query);
+    }
+
+    /**
+     * Gets if the engine is able to search pages after the first.
+     * @return True if the engine has pages, false otherwise
+     */
+    public boolean hasPages() {
+        return false;
+    }
 
     /**
-     /**
      * Gets a list of {@link SearchResult}.
+     * <p>
+     * This blocks until the results are available. By default it waits for the first page of
+     * {@link #search(String, int, Consumer)} and copies the results, engines override at least one of the search methods.
      * @param query The query
      * @return The list of results
      * @throws IOException Thrown when an error occurred while getting results
+     * @deprecated Engines implement {@link #search(String)} returning {@link SearchResults} instead
+     */
+    @Deprecated
+    public CopyOnWriteArrayList<? extends SearchResult> getResults(String query) throws IOException {
+        return new CopyOnWriteArrayList<>(await(search(query, 1, null)));
+    }
+
+    /**
+     * Searches for the query asynchronously.
+     * <p>
+     * By default this runs {@link #getResults(String)} on Enquiry's I/O threads so engines only implementing the blocking method keep
+     * working.
+     * @param query The query
+     * @return The future results, completed exceptionally with an {@link IOException} when an error occurred
+     */
+    @SuppressWarnings("deprecation")
+    public CompletableFuture<SearchResults> search(String query) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final List<? extends SearchResult> results = getResults(query);
+                final SearchResults compact = SearchResults.of(results);
+                if (compact.size() < results.size()) {
+                    Enquiry.instance.logger.warn("Skipped " + (results.size() - compact.size()) + " result(s) of " + getPlainName()
+                            + " for " + query + " without a url");
+                }
+                return compact;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, Enquiry.instance.executor.io());
+    }
+
+    /**
+     * Searches for a page of results of the query asynchronously.
+     * <p>
+     * By default only the first page is searched, engines that are able to page override this along with {@link #hasPages()}.
+     * @param query The query
+     * @param page The page, starting at 1
+     * @return The future results, completed exceptionally with an {@link IOException} when an error occurred
+     */
+    public CompletableFuture<SearchResults> search(String query, int page) {
+        if (page != 1) {
+            return failed(new IOException(getPlainName() + " only has a single page of results"));
+        }
+        return search(query);
+    }
+
+    /**
+     * Searches for a page of results of the query asynchronously, handing each result to the subscriber as soon as it is read.
+     * <p>
+     * The subscriber is called in order on the thread reading the response and before the future completes with every result, it must
+     * not block nor throw. By default the results are handed over once the search completed, engines reading their response as a
+     * stream override this.
+     * @param query The query
+     * @param page The page, starting at 1
+     * @param subscriber The subscriber of the results or null
+     * @return The future results, completed exceptionally with an {@link IOException} when an error occurred
+     */
+    public CompletableFuture<SearchResults> search(String query, int page, Consumer<? super SearchResult> subscriber) {
+        if (subscriber == null) {
+            return search(query, page);
+        }
+        return search(query, page).thenApply(results -> {
+            results.forEach(subscriber);
+            return results;
+        });
+    }
+
+    /**
+     * Gets the response for the query from the cache or, when not cached, from a disk cache lookup or search shared with identical
+     * searches in flight.
+     * @param query The query
+     * @return The future response
+     */
+    public final CompletableFuture<SearchResponse> lookup(String query) {
+        return this.lookup(query, 1);
+    }
+
+    /**
+     * Gets the response for a page of results of the query from the cache or, when not cached, from a disk cache lookup or search shared
+     * with identical searches in flight.
+     * @param query The query
+     * @param page The page, starting at 1
+     * @return The future response
+     */
+    public final CompletableFuture<SearchResponse> lookup(String query, int page) {
+        return this.lookup(query, page, null);
+    }
+
+    /**
+     * Gets the response for a page of results of the query like {@link #lookup(String, int)}, streaming the results to the subscriber
+     * as they are read when they are searched upstream.
+     * <p>
+     * Results served from a cache, by a search in flight or by a hedged search are not streamed, the subscriber is only called when
+     * this lookup performs the upstream call of a search that is not hedged.
+     * @param query The query
+     * @param page The page, starting at 1
+     * @param subscriber The subscriber of the results or null
+     * @return The future response
+     */
+    public final CompletableFuture<SearchResponse> lookup(String query, int page, Consumer<? super SearchResult> subscriber) {
+        final String canonical = this.getNormalizer().normalize(query);
+        final String key = ResultCache.key(canonical, page);
+        final SearchResponse cached = this.getCache().get(key, query);
+        if (cached != null) {
+            // Hand listeners their own copy so they cannot modify the cached entry
+            return CompletableFuture.completedFuture(cached.copy());
+        }
+        final String upstream = this.getConfig().isSendNormalized() ? canonical : query;
+        // The response is shared by every search joining it and the cache, each gets its own copy
+        return this.coalescer.search(key, () -> this.load(key, upstream, page, subscriber).thenApply(response -> {
+            this.getCache().put(key, query, response);
+            return response;
+        })).thenApply(SearchResponse::copy);
+    }
+
+    /**
+     * Loads the response from the disk cache or, when not stored, from upstream.
+     * @param key The key of the page of the query
+     * @param query The query
+     * @param page The page
+     * @param subscriber The subscriber of the results or null
+     * @return The future response
+     */
+    private CompletableFuture<SearchResponse> load(String key, String query, int page, Consumer<? super SearchResult> subscriber) {
+        final DiskResultCache diskCache = Enquiry.instance.diskCache;
+        if (!diskCache.isEnabled() || !this.getConfig().isCacheEnabled()) {
+            return this.fetch(query, page, subscriber);
+        }
+        return CompletableFuture.supplyAsync(() -> diskCache.get(this, key), Enquiry.instance.executor).thenCompose(stored -> {
+            if (stored != null) {
+                return CompletableFuture.completedFuture(stored);
+            }
+            return this.fetch(query, page, subscriber).thenApply(response -> {
+                diskCache.put(this, key, response, TimeUnit.SECONDS.toMillis(this.getConfig().getCacheTtl()));
+                return response;
+            });
+        });
+    }
+
+    /**
+     * Searches upstream, hedged with the fallback engine if one is configured.
+     * <p>
+     * Pages after the first are only hedged when the fallback has pages as well.
+     * @param query The query
+     * @param page The page
+     * @param subscriber The subscriber of the results or null
+     * @return The future response
+     */
+    private CompletableFuture<SearchResponse> fetch(String query, int page, Consumer<? super SearchResult> subscriber) {
+        final SearchEngine fallback = this.getHedgePolicy().getFallback(this);
+        if (fallback == null || page > 1 && !fallback.hasPages()) {
+            return this.call(query, page, subscriber);
+        }
+        // Either engine may answer a hedged search, so neither streams results that might not be the ones shown
+        return this.getHedgePolicy().hedge(this.call(query, page, null), this.latency, () -> fallback.call(query, page, null));
+    }
+
+    /**
+     * Performs a single upstream call within the engine's bulkhead, circuit breaker and rate limit.
+     * @param query The query
+     * @param page The page
+     * @param subscriber The subscriber of the results or null
+     * @return The future response
+     */
+    private CompletableFuture<SearchResponse> call(String query, int page, Consumer<? super SearchResult> subscriber) {
+        final long start = System.nanoTime();
+        // The breaker is checked before the rate limit so failing fast while it is open does not use up the quota
+        return Enquiry.instance.executor.bulkhead(this, () -> this.getCircuitBreaker().guard(() -> this.getRateLimiter().guard(() ->
+                search(query, page, subscriber))))
+                .thenApply(results -> {
+                    this.latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return new SearchResponse(this, results);
+                });
+    }
+
+    /**
+     * Performs the request of the query on Enquiry's I/O threads and reads the results from the body of a successful response.
+     * @param query The query
+     * @param reader The reader of the results
+     * @return The future results, completed exceptionally with an {@link IOException} when the request failed
+     */
+    protected CompletableFuture<SearchResults> request(String query, JsonResultReader reader) {
+        return this.request(query, 1, 0, reader);
+    }
+
+    /**
+     * Performs the request of a page of the query on Enquiry's I/O threads and reads the results from the body of a successful
+     * response.
+     * @param query The query
+     * @param page The page
+     * @param skip The amount of results to skip, for APIs returning every page at once
+     * @param reader The reader of the results
+     * @return The future results, completed exceptionally with an {@link IOException} when the request failed
+     */
+    protected CompletableFuture<SearchResults> request(String query, int page, int skip, JsonResultReader reader) {
+        return this.request(query, page, skip, reader, null);
+    }
+
+    /**
+     * Performs the request of a page of the query on Enquiry's I/O threads and reads the results from the body of a successful
+     * response, handing each result to the subscriber as soon as it is read while the rest of the body is still being received.
+     * @param query The query
+     * @param page The page
+     * @param skip The amount of results to skip, for APIs returning every page at once
+     * @param reader The reader of the results
+     * @param subscriber The subscriber of the results or null
+     * @return The future results, completed exceptionally with an {@link IOException} when the request failed
+     */
+    protected CompletableFuture<SearchResults> request(String query, int page, int skip, JsonResultReader reader,
+            Consumer<? super SearchResult> subscriber) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Enquiry.instance.transport.read(getRequest(query, page), this.getName(), this.metrics,
+                        body -> reader.read(body, skip, this.getMaxResults(), subscriber));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, Enquiry.instance.executor.io());
+    }
+
+    /**
+     * Waits for the results of {@link #search(String)}.
+     * @param future The future results
+     * @return The results
+     * @throws IOException Thrown when an error occurred while getting results
+     */
+    protected static SearchResults await(CompletableFuture<SearchResults> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for results", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = SearchTask.unwrap(e);
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * Creates a future that already failed with the exception.
+     * @param exception The exception
+     * @return The failed future
      */
-    public abstract CopyOnWriteArrayList<? extends SearchResult> getResults(String query) throws IOException;
+    protected static CompletableFuture<SearchResults> failed(IOException exception) {
+        final CompletableFuture<SearchResults> future = new CompletableFuture<>();
+        future.completeExceptionally(exception);
+        return future;
+    }
 
     @Override
     public int hashCode() {
@@ -0,0 +1,68 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.api.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The results of a search along with the engine that served them.
+ * <p>
+ * The serving engine differs from the engine searched with when the search was answered by a fallback engine.
+ */
+public class SearchResponse {
+
+    private final SearchEngine engine;
+    private final List<? extends SearchResult> results;
+
+    public SearchResponse(SearchEngine engine, List<? extends SearchResult> results) {
+        this.engine = engine;
+        this.results = results;
+    }
+
+    /**
+     * Gets the {@link SearchEngine} that served the results.
+     * @return The engine
+     */
+    public SearchEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the list of {@link SearchResult}.
+     * @return The results
+     */
+    public List<? extends SearchResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Copies the response so the results can be modified without affecting this response.
+     * @return The copy
+     */
+    public SearchResponse copy() {
+        return new SearchResponse(this.engine, new CopyOnWriteArrayList<>(this.results));
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.api.engine;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list of {@link SearchResult}s stored in a compact form.
+ * <p>
+ * The titles, descriptions and the paths of the URLs of every result are stored as UTF-8 in a single byte array, the scheme and host
+ * of each URL is interned so results of the same site share it. Strings are only decoded when they are read from a result, results are
+ * views created on access that retain nothing but the list.
+ * <p>
+ * Empty titles and descriptions are read as null.
+ */
+public final class SearchResults extends AbstractList<SearchResult> implements RandomAccess {
+
+    private static final Interner<String> HOSTS = Interners.newWeakInterner();
+    private static final int FIELDS = 3;
+    private static final int TITLE = 0, DESCRIPTION = 1, PATH = 2;
+
+    public static final SearchResults EMPTY = new SearchResults(new String[0], new byte[0], new int[1]);
+
+    private final String[] hosts;
+    private final byte[] data;
+    private final int[] offsets;
+
+    private SearchResults(String[] hosts, byte[] data, int[] offsets) {
+        this.hosts = hosts;
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Stores the results in the compact form, results that already are are returned as they are. Results without a url are left out as
+     * there is nothing to link them to.
+     * @param results The results
+     * @return The {@link SearchResults}
+     */
+    public static SearchResults of(List<? extends SearchResult> results) {
+        if (results instanceof SearchResults) {
+            return (SearchResults) results;
+        }
+        final Builder builder = builder(results.size());
+        for (SearchResult result : results) {
+            if (result != null) {
+                builder.add(result);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a builder.
+     * @param expected The expected amount of results
+     * @return The {@link Builder}
+     */
+    public static Builder builder(int expected) {
+        return new Builder(expected);
+    }
+
+    @Override
+    public SearchResult get(int index) {
+        if (index < 0 || index >= this.hosts.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.hosts.length);
+        }
+        return new Result(this, index);
+    }
+
+    @Override
+    public int size() {
+        return this.hosts.length;
+    }
+
+    /**
+     * Gets the approximate amount of bytes retained by the results, not counting the interned hosts.
+     * @return The retained size
+     */
+    public int getRetainedSize() {
+        return this.data.length + this.offsets.length * 4 + this.hosts.length * 8;
+    }
+
+    private String decode(int index, int field) {
+        final int start = this.offsets[index * FIELDS + field];
+        final int end = this.offsets[index * FIELDS + field + 1];
+        return start == end ? null : new String(this.data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private String url(int index) {
+        final String path = this.decode(index, PATH);
+        return path == null ? this.hosts[index] : this.hosts[index] + path;
+    }
+
+    /**
+     * Gets the end of the scheme and host of an url.
+     * @param url The url
+     * @return The index of the first character of the path or 0 if the url has no host
+     */
+    private static int hostEnd(String url) {
+        final int scheme = url.indexOf("://");
+        if (scheme < 0) {
+            return 0;
+        }
+        final int path = url.indexOf('/', scheme + 3);
+        return path < 0 ? url.length() : path;
+    }
+
+    /**
+     * A result of the list, decoded from it on access.
+     */
+    private static final class Result implements SearchResult {
+
+        private final SearchResults results;
+        private final int index;
+
+        Result(SearchResults results, int index) {
+            this.results = results;
+            this.index = index;
+        }
+
+        @Override
+        public String getTitle() {
+            return this.results.decode(this.index, TITLE);
+        }
+
+        @Override
+        public String getDescription() {
+            return this.results.decode(this.index, DESCRIPTION);
+        }
+
+        @Override
+        public String getUrl() {
+            return this.results.url(this.index);
+        }
+
+        @Override
+        public String toString() {
+            return this.getTitle() + " <" + this.getUrl() + ">";
+        }
+    }
+
+    /**
+     * Appends results in order, the builder can not be used after building.
+     */
+    public static final class Builder {
+
+        private String[] hosts;
+        private byte[] data;
+        private int[] offsets;
+        private int count;
+        private int length;
+
+        private Builder(int expected) {
+            expected = Math.max(1, expected);
+            this.hosts = new String[expected];
+            this.data = new byte[expected * 128];
+            this.offsets = new int[expected * FIELDS + 1];
+        }
+
+        /**
+         * Appends a result.
+         * @param result The result
+         * @return This builder
+         */
+        public Builder add(SearchResult result) {
+            return this.add(result.getTitle(), result.getDescription(), result.getUrl());
+        }
+
+        /**
+         * Appends a result, a result without a url is skipped as there is nothing to link it to.
+         * @param title The title or null
+         * @param description The description or null
+         * @param url The url
+         * @return This builder
+         */
+        public Builder add(String title, String description, String url) {
+            if (url == null || url.isEmpty()) {
+                return this;
+            }
+            if (this.count == this.hosts.length) {
+                this.hosts = Arrays.copyOf(this.hosts, this.count * 2);
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2 * FIELDS + 1);
+            }
+            final int hostEnd = hostEnd(url);
+            this.hosts[this.count] = HOSTS.intern(url.substring(0, hostEnd));
+            final int base = this.count * FIELDS;
+            this.append(base + TITLE, title);
+            this.append(base + DESCRIPTION, description);
+            this.append(base + PATH, hostEnd == url.length() ? null : url.substring(hostEnd));
+            this.count++;
+            return this;
+        }
+
+        /**
+         * Gets the amount of results appended.
+         * @return The amount
+         */
+        public int size() {
+            return this.count;
+        }
+
+        /**
+         * Builds the results, trimming the arrays to their used length.
+         * @return The {@link SearchResults}
+         */
+        public SearchResults build() {
+            if (this.count == 0) {
+                return EMPTY;
+            }
+            return new SearchResults(Arrays.copyOf(this.hosts, this.count), Arrays.copyOf(this.data, this.length),
+                    Arrays.copyOf(this.offsets, this.count * FIELDS + 1));
+        }
+
+        private void append(int field, String value) {
+            if (value != null && !value.isEmpty()) {
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (this.length + bytes.length > this.data.length) {
+                    this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2, this.length + bytes.length));
+                }
+                System.arraycopy(bytes, 0, this.data, this.length, bytes.length);
+                this.length += bytes.length;
+            }
+            this.offsets[field + 1] = this.length;
+        }
+    }
+}
@@ -32,7 +32,40 @@ import org.spongepowered.api.util.command.CommandSource;
  */
 public class SearchFailureEvent extends SearchEvent {
 
+    public final Reason reason;
+
     public SearchFailureEvent(CommandSource source, SearchEngine engine, String query) {
+        this(source, engine, query, Reason.ERROR);
+    }
+
+    public SearchFailureEvent(CommandSource source, SearchEngine engine, String query, Reason reason) {
         super(source, engine, query);
+        this.reason = reason;
+    }
+
+    /**
+     * The reason a search failed.
+     */
+    public enum Reason {
+        /**
+         * An error occurred while searching.
+         */
+        ERROR,
+        /**
+         * The engine was already handling too many searches.
+         */
+        BUSY,
+        /**
+         * The engine kept failing and searches are paused until it recovers.
+         */
+        UNAVAILABLE,
+        /**
+         * The player or engine exceeded its rate limit.
+         */
+        RATE_LIMITED,
+        /**
+         * The daily quota of the engine has been used up.
+         */
+        QUOTA_EXCEEDED
     }
 }
@@ -34,13 +34,26 @@ import java.util.List;
  * Fired when a search has succeeded.
  * <p>
  * Cancelling will not prevent a search from occurring, only prevent the output of the search results.
+ * <p>
+ * When results are streamed (options.streaming.enabled) the results read from upstream were already sent as they arrived. The event
+ * still carries every result, but cancelling it or modifying the results only affects the results that were not sent yet.
  */
 public class SearchSuccessEvent extends SearchEvent {
 
     public final List<? extends SearchResult> results;
+    /**
+     * The engine that served the results, differs from {@link #engine} when the search was answered by its fallback engine.
+     */
+    public final SearchEngine servingEngine;
 
     public SearchSuccessEvent(CommandSource source, SearchEngine engine, String query, List<? extends SearchResult> results) {
+        this(source, engine, query, results, engine);
+    }
+
+    public SearchSuccessEvent(CommandSource source, SearchEngine engine, String query, List<? extends SearchResult> results,
+            SearchEngine servingEngine) {
         super(source, engine, query);
         this.results = results;
+        this.servingEngine = servingEngine;
     }
 }
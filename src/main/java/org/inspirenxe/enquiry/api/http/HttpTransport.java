@@ -0,0 +1,259 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.api.http;
+
+import com.github.kevinsawicki.http.HttpRequest;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The HTTP transport shared by search engines.
+ * <p>
+ * Requests are configured with timeouts and persistent connections, and responses are always read to the end so the underlying
+ * connection is returned to the JVM's per host keep-alive pool and reused by the next search to the same host.
+ */
+public class HttpTransport {
+
+    private volatile int connectTimeout;
+    private volatile int readTimeout;
+
+    public HttpTransport(int connectTimeout, int readTimeout, int maxConnections) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        // The pool is global to the JVM, respect the server owner's settings if they have tuned it already
+        if (System.getProperty("http.keepAlive") == null) {
+            HttpRequest.keepAlive(true);
+        }
+        if (System.getProperty("http.maxConnections") == null) {
+            HttpRequest.maxConnections(maxConnections);
+        }
+    }
+
+    /**
+     * Creates the transport from the options under options.transport
+     * @return The {@link HttpTransport}
+     */
+    public static HttpTransport create() {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        return new HttpTransport(config.getConnectTimeout(), config.getReadTimeout(), config.getMaxConnectionsPerHost());
+    }
+
+    /**
+     * Applies the timeouts of a reloaded configuration to requests made from now on. The connection pool size only changes on restart.
+     * @param config The configuration
+     */
+    public void configure(EnquiryConfig config) {
+        this.connectTimeout = config.getConnectTimeout();
+        this.readTimeout = config.getReadTimeout();
+    }
+
+    /**
+     * Creates a GET request to the url with the encoded query parameters.
+     * @param url The url
+     * @param params The query parameters as name/value pairs
+     * @return The {@link HttpRequest}
+     */
+    public HttpRequest get(CharSequence url, Object... params) {
+        return this.configure(HttpRequest.get(url, true, params));
+    }
+
+    /**
+     * Applies the transport's timeouts and connection settings to a request.
+     * @param request The request
+     * @return The request
+     */
+    public HttpRequest configure(HttpRequest request) {
+        return request
+                .connectTimeout(this.connectTimeout)
+                .readTimeout(this.readTimeout)
+                .useCaches(false)
+                .header("Connection", "keep-alive")
+                .acceptGzipEncoding()
+                .uncompress(true)
+                .acceptCharset(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Performs the request and reads the body of a successful response.
+     * @param request The request
+     * @param name The name of the engine performing the request, used in error messages
+     * @return The body
+     * @throws IOException Thrown when the request failed, the response was not successful or the body is empty
+     */
+    public String body(HttpRequest request, Text name) throws IOException {
+        try {
+            final int code = request.code();
+            if (code != 200) {
+                // Drain the error body so the connection can be reused
+                request.body();
+                throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(name) + ", Error: " + code);
+            }
+            final String body = request.body();
+            if (body.isEmpty()) {
+                throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(name) + ", Error: Body is "
+                        + "empty.");
+            }
+            return body;
+        } catch (HttpRequest.HttpRequestException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Performs the request and reads the body of a successful response as a stream.
+     * <p>
+     * Any part of the body the reader did not consume is drained before the body is closed so the connection can be reused.
+     * @param request The request
+     * @param name The name of the engine performing the request, used in error messages
+     * @param reader The reader consuming the body
+     * @param <T> The type read
+     * @return The value read
+     * @throws IOException Thrown when the request failed, the response was not successful or the body could not be read
+     */
+    public <T> T read(HttpRequest request, Text name, BodyReader<T> reader) throws IOException {
+        return this.read(request, name, null, reader);
+    }
+
+    /**
+     * Performs the request and reads the body of a successful response as a stream, recording the time spent connecting, waiting for the
+     * response and reading it as well as the bytes received.
+     * <p>
+     * Any part of the body the reader did not consume is drained before the body is closed so the connection can be reused.
+     * @param request The request
+     * @param name The name of the engine performing the request, used in error messages
+     * @param metrics The metrics to record to or null to not record
+     * @param reader The reader consuming the body
+     * @param <T> The type read
+     * @return The value read
+     * @throws IOException Thrown when the request failed, the response was not successful or the body could not be read
+     */
+    public <T> T read(HttpRequest request, Text name, SearchMetrics metrics, BodyReader<T> reader) throws IOException {
+        try {
+            final long start = System.nanoTime();
+            request.getConnection().connect();
+            final long connected = System.nanoTime();
+            final int code = request.code();
+            if (metrics != null) {
+                metrics.recordSince(SearchMetrics.Stage.CONNECT, start);
+                metrics.recordSince(SearchMetrics.Stage.FIRST_BYTE, connected);
+            }
+            if (code != 200) {
+                request.body();
+                throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(name) + ", Error: " + code);
+            }
+            if (request.contentLength() == 0) {
+                throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(name) + ", Error: Body is "
+                        + "empty.");
+            }
+            final long reading = System.nanoTime();
+            try (CountingInputStream stream = new CountingInputStream(request.stream());
+                    Reader body = new BufferedReader(new InputStreamReader(stream, charset(request)))) {
+                final T value = reader.read(body);
+                drain(stream);
+                if (metrics != null) {
+                    metrics.recordSince(SearchMetrics.Stage.PARSE, reading);
+                    metrics.received(stream.getCount());
+                }
+                return value;
+            }
+        } catch (HttpRequest.HttpRequestException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Connects to the host of the url ahead of a search so the lookup of the host and the handshake are done by the time a search needs
+     * the connection.
+     * <p>
+     * A HEAD request is sent, whatever the status of its response the connection is returned to the keep-alive pool.
+     * @param url The url
+     * @throws IOException Thrown when the host could not be resolved or connected to
+     */
+    public void warm(CharSequence url) throws IOException {
+        try {
+            this.configure(HttpRequest.head(url)).code();
+        } catch (HttpRequest.HttpRequestException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Gets the connect timeout in milliseconds.
+     * @return The connect timeout
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Gets the read timeout in milliseconds.
+     * @return The read timeout
+     */
+    public int getReadTimeout() {
+        return this.readTimeout;
+    }
+
+    /**
+     * Reads the rest of a body, the JVM only returns a connection to the keep-alive pool once its response was read to the end. A body
+     * that fails to drain costs the connection but not the value already read.
+     */
+    private static void drain(InputStream stream) {
+        try {
+            ByteStreams.copy(stream, ByteStreams.nullOutputStream());
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Charset charset(HttpRequest request) {
+        final String charset = request.charset();
+        try {
+            return charset == null || charset.isEmpty() ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    /**
+     * Reads the body of a response.
+     * @param <T> The type read
+     */
+    public interface BodyReader<T> {
+
+        T read(Reader body) throws IOException;
+    }
+}
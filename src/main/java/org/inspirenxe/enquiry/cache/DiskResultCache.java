@@ -0,0 +1,562 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.cache;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A disk backed cache of search results that survives restarts.
+ * <p>
+ * Responses are appended to segment logs and located through a memory-mapped open addressing index keyed by the hash of the engine id
+ * and normalized query. Nothing is read until the first lookup, which only maps the index, so a large cache does not slow down startup.
+ * Once the segments exceed the size cap or the index fills up, live entries are compacted into new segments on the executor, dropping
+ * expired entries first and the oldest entries after that.
+ * <p>
+ * Entries are kept no longer than the engine that searched them caches results in memory, the disk cache is a second tier of the same
+ * cache that survives restarts and not a store of stale results.
+ */
+public class DiskResultCache {
+
+    private static final int MAGIC = 0x45514331;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 32;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final File directory;
+    private final boolean enabled;
+    private final long ttl;
+    private final long maxSize;
+    private final long segmentSize;
+    private final int capacity;
+    private final Executor executor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, FileChannel> segments = Maps.newHashMap();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile boolean opened;
+    private RandomAccessFile indexFile;
+    private MappedByteBuffer index;
+    private int size;
+    private int activeSegment;
+    private long activeSize;
+    private long totalSize;
+
+    public DiskResultCache(File directory, boolean enabled, long ttl, long maxSize, int maxEntries, Executor executor) {
+        this.directory = directory;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.segmentSize = Math.max(64 * 1024, maxSize / 4);
+        // Twice the entries so probe sequences stay short, rounded up to a power of two for masking
+        this.capacity = Integer.highestOneBit(Math.max(1024, maxEntries * 2) - 1) << 1;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates the cache from the options under options.disk-cache
+     * @param directory The directory to store the cache in
+     * @param executor The executor compactions run on
+     * @return The {@link DiskResultCache}
+     */
+    public static DiskResultCache create(File directory, Executor executor) {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        return new DiskResultCache(directory, config.isDiskCacheEnabled(), config.getDiskCacheTtl(), config.getDiskCacheMaxSize(),
+                (int) config.getDiskCacheMaxEntries(), executor);
+    }
+
+    /**
+     * Gets the stored response for a query.
+     * @param engine The engine searched with
+     * @param query The key of the page of the canonical query, see {@link ResultCache#key(String, int)}
+     * @return The response or null if the query is not stored, expired, unreadable or the cache is busy compacting
+     */
+    public SearchResponse get(SearchEngine engine, String query) {
+        if (!this.enabled) {
+            return null;
+        }
+        final String key = key(engine, query);
+        final long hash = hash(key);
+        int corrupt = -1;
+        int segment = 0;
+        long offset = 0;
+        try {
+            this.open();
+            if (!this.lock.readLock().tryLock()) {
+                this.misses.incrementAndGet();
+                return null;
+            }
+            try {
+                final int slot = this.find(hash);
+                if (slot >= 0) {
+                    final int position = HEADER_SIZE + slot * SLOT_SIZE;
+                    if (this.index.getLong(position + 8) > System.currentTimeMillis()) {
+                        segment = this.index.getInt(position + 16);
+                        offset = this.index.getLong(position + 24);
+                        final Record record = tryRead(this.segments.get(segment), offset);
+                        if (record == null) {
+                            Enquiry.instance.logger.debug("Evicting the unreadable entry of " + query + " from the disk cache");
+                            corrupt = position;
+                        } else if (record.key.equals(key)) {
+                            this.hits.incrementAndGet();
+                            return record.toResponse(engine);
+                        }
+                    }
+                }
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        } catch (IOException e) {
+            Enquiry.instance.logger.debug("Could not read " + query + " from the disk cache", e);
+        }
+        if (corrupt >= 0) {
+            this.evict(corrupt, hash, segment, offset);
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the response of a query.
+     * @param engine The engine searched with
+     * @param query The key of the page of the canonical query, see {@link ResultCache#key(String, int)}
+     * @param response The response
+     * @param ttl The time the engine caches results for in milliseconds, the response is kept for the shorter of it and the time to live
+     *     of the disk cache
+     */
+    public void put(SearchEngine engine, String query, SearchResponse response, long ttl) {
+        if (!this.enabled || response.getResults() == null) {
+            return;
+        }
+        final String key = key(engine, query);
+        final long expiresAt = System.currentTimeMillis() + Math.min(ttl, this.ttl);
+        try {
+            this.open();
+            final byte[] record = encode(key, expiresAt, response);
+            if (record.length > MAX_RECORD_SIZE) {
+                return;
+            }
+            final boolean full;
+            this.lock.writeLock().lock();
+            try {
+                final long offset = this.append(record);
+                this.index(hash(key), expiresAt, this.activeSegment, offset);
+                full = this.isFull();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+            if (full) {
+                this.scheduleCompaction();
+            }
+        } catch (IOException e) {
+            Enquiry.instance.logger.debug("Could not write " + query + " to the disk cache", e);
+        }
+    }
+
+    /**
+     * Flushes the index and closes the segments.
+     */
+    public void close() {
+        if (!this.opened) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.index.force();
+            for (FileChannel channel : this.segments.values()) {
+                channel.close();
+            }
+            this.segments.clear();
+            this.indexFile.close();
+            this.opened = false;
+        } catch (IOException e) {
+            Enquiry.instance.logger.warn("Could not close the disk cache", e);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of lookups that were served from disk.
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * Gets the amount of lookups that were not served from disk.
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * Gets if the cache is enabled.
+     * @return True if enabled, false if not
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    private void open() throws IOException {
+        if (this.opened) {
+            return;
+        }
+        this.lock.writeLock().lock();
+        try {
+            if (this.opened) {
+                return;
+            }
+            if (!this.directory.exists() && !this.directory.mkdirs()) {
+                throw new IOException("Could not create " + this.directory);
+            }
+            final File file = new File(this.directory, "index.dat");
+            final long length = HEADER_SIZE + (long) this.capacity * SLOT_SIZE;
+            final boolean valid = file.length() == length;
+            this.indexFile = new RandomAccessFile(file, "rw");
+            this.indexFile.setLength(length);
+            this.index = this.indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            final File[] files = this.directory.listFiles();
+            if (!valid || this.index.getInt(0) != MAGIC) {
+                // Index is missing or was created with another capacity, the segments can no longer be located
+                if (files != null) {
+                    for (File segment : files) {
+                        if (SEGMENT_PATTERN.matcher(segment.getName()).matches() && !segment.delete()) {
+                            throw new IOException("Could not delete " + segment);
+                        }
+                    }
+                }
+                this.clearIndex();
+            } else if (files != null) {
+                for (File segment : files) {
+                    final Matcher matcher = SEGMENT_PATTERN.matcher(segment.getName());
+                    if (matcher.matches()) {
+                        final int id = Integer.parseInt(matcher.group(1));
+                        final FileChannel channel = new RandomAccessFile(segment, "rw").getChannel();
+                        this.segments.put(id, channel);
+                        this.totalSize += channel.size();
+                        this.activeSegment = Math.max(this.activeSegment, id);
+                    }
+                }
+            }
+            this.size = this.index.getInt(4);
+            this.activeSize = this.channel(this.activeSegment).size();
+            this.opened = true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private FileChannel channel(int segment) throws IOException {
+        FileChannel channel = this.segments.get(segment);
+        if (channel == null) {
+            channel = new RandomAccessFile(new File(this.directory, "segment-" + segment + ".log"), "rw").getChannel();
+            this.segments.put(segment, channel);
+        }
+        return channel;
+    }
+
+    private long append(byte[] record) throws IOException {
+        if (this.activeSize > 0 && this.activeSize + record.length > this.segmentSize) {
+            this.activeSegment++;
+            this.activeSize = 0;
+        }
+        final FileChannel channel = this.channel(this.activeSegment);
+        final long offset = this.activeSize;
+        final ByteBuffer buffer = ByteBuffer.wrap(record);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        this.activeSize += record.length;
+        this.totalSize += record.length;
+        return offset;
+    }
+
+    /**
+     * Reads a record, a record that is out of bounds or can not be decoded is read as null.
+     */
+    private static Record tryRead(FileChannel channel, long offset) {
+        try {
+            return read(channel, offset);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Record read(FileChannel channel, long offset) throws IOException {
+        if (channel == null || offset + 4 > channel.size()) {
+            return null;
+        }
+        final ByteBuffer length = ByteBuffer.allocate(4);
+        channel.read(length, offset);
+        final int recordLength = length.getInt(0);
+        if (recordLength <= 4 || recordLength > MAX_RECORD_SIZE || offset + recordLength > channel.size()) {
+            return null;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(recordLength - 4);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + 4 + buffer.position()) < 0) {
+                return null;
+            }
+        }
+        return Record.decode(buffer.array());
+    }
+
+    private int find(long hash) {
+        final int mask = this.capacity - 1;
+        for (int i = 0, slot = (int) (hash ^ (hash >>> 32)) & mask; i < this.capacity; i++, slot = (slot + 1) & mask) {
+            final long existing = this.index.getLong(HEADER_SIZE + slot * SLOT_SIZE);
+            if (existing == hash) {
+                return slot;
+            } else if (existing == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void index(long hash, long expiresAt, int segment, long offset) {
+        final int mask = this.capacity - 1;
+        for (int i = 0, slot = (int) (hash ^ (hash >>> 32)) & mask; i < this.capacity; i++, slot = (slot + 1) & mask) {
+            final int position = HEADER_SIZE + slot * SLOT_SIZE;
+            final long existing = this.index.getLong(position);
+            if (existing == hash || existing == 0) {
+                if (existing == 0) {
+                    this.index.putInt(4, ++this.size);
+                }
+                this.index.putLong(position + 8, expiresAt);
+                this.index.putInt(position + 16, segment);
+                this.index.putLong(position + 24, offset);
+                // Publish the hash last so a crash mid-write leaves the slot empty rather than pointing at garbage
+                this.index.putLong(position, hash);
+                return;
+            }
+        }
+    }
+
+    private void clearIndex() {
+        for (int i = 0; i < this.index.capacity(); i += 8) {
+            this.index.putLong(i, 0);
+        }
+        this.index.putInt(0, MAGIC);
+        this.index.putInt(4, 0);
+        this.size = 0;
+    }
+
+    private boolean isFull() {
+        return this.totalSize > this.maxSize || this.size > this.capacity * 7 / 10;
+    }
+
+    /**
+     * Compacts the cache on the executor unless a compaction is already pending, searches storing their response do not wait for it.
+     */
+    private void scheduleCompaction() {
+        if (!this.compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.executor.execute(() -> {
+                try {
+                    this.lock.writeLock().lock();
+                    try {
+                        if (this.opened && this.isFull()) {
+                            this.compact();
+                        }
+                    } finally {
+                        this.lock.writeLock().unlock();
+                    }
+                } catch (IOException e) {
+                    Enquiry.instance.logger.warn("Could not compact the disk cache", e);
+                } finally {
+                    this.compacting.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Retried by the next put
+            this.compacting.set(false);
+        }
+    }
+
+    /**
+     * Expires the slot of a record that could not be read so it is not read again and is dropped by the next compaction. The slot stays
+     * occupied as emptying it would break the probe sequences running through it.
+     */
+    private void evict(int position, long hash, int segment, long offset) {
+        this.lock.writeLock().lock();
+        try {
+            // The slot may have been written again or compacted away since it was read
+            if (this.opened && this.index.getLong(position) == hash && this.index.getInt(position + 16) == segment
+                    && this.index.getLong(position + 24) == offset) {
+                this.index.putLong(position + 8, 0);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void compact() throws IOException {
+        final long now = System.currentTimeMillis();
+        final List<long[]> live = Lists.newArrayList();
+        for (int slot = 0; slot < this.capacity; slot++) {
+            final int position = HEADER_SIZE + slot * SLOT_SIZE;
+            final long hash = this.index.getLong(position);
+            final long expiresAt = this.index.getLong(position + 8);
+            if (hash != 0 && expiresAt > now) {
+                live.add(new long[] {hash, expiresAt, this.index.getInt(position + 16), this.index.getLong(position + 24)});
+            }
+        }
+        // Keep the entries written most recently, they expire last
+        live.sort((a, b) -> Long.compare(b[1], a[1]));
+        final Map<Integer, FileChannel> old = Maps.newHashMap(this.segments);
+        this.segments.clear();
+        this.activeSegment = old.isEmpty() ? 0 : this.activeSegment + 1;
+        this.activeSize = 0;
+        this.totalSize = 0;
+        final List<long[]> kept = Lists.newArrayList();
+        for (long[] entry : live) {
+            if (this.totalSize > this.maxSize * 3 / 4 || kept.size() >= this.capacity / 2) {
+                break;
+            }
+            final Record record = tryRead(old.get((int) entry[2]), entry[3]);
+            if (record != null) {
+                final long offset = this.append(record.bytes);
+                kept.add(new long[] {entry[0], entry[1], this.activeSegment, offset});
+            }
+        }
+        this.clearIndex();
+        for (long[] entry : kept) {
+            this.index(entry[0], entry[1], (int) entry[2], entry[3]);
+        }
+        for (Map.Entry<Integer, FileChannel> entry : old.entrySet()) {
+            if (!this.segments.containsKey(entry.getKey())) {
+                entry.getValue().close();
+                new File(this.directory, "segment-" + entry.getKey() + ".log").delete();
+            }
+        }
+    }
+
+    private static String key(SearchEngine engine, String query) {
+        return engine.getId() + '\n' + query;
+    }
+
+    private static long hash(String key) {
+        final long hash = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asLong();
+        // 0 marks an empty slot
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static byte[] encode(String key, long expiresAt, SearchResponse response) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        final DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0);
+        output.writeLong(expiresAt);
+        output.writeUTF(key);
+        output.writeUTF(response.getEngine().getId());
+        output.writeInt(response.getResults().size());
+        for (SearchResult result : response.getResults()) {
+            output.writeUTF(result.getTitle() == null ? "" : result.getTitle());
+            output.writeUTF(result.getDescription() == null ? "" : result.getDescription());
+            output.writeUTF(result.getUrl());
+        }
+        output.flush();
+        final byte[] record = bytes.toByteArray();
+        ByteBuffer.wrap(record).putInt(0, record.length);
+        return record;
+    }
+
+    private static class Record {
+
+        private final byte[] bytes;
+        private final String key;
+        private final String servingEngine;
+        private final SearchResults results;
+
+        private Record(byte[] bytes, String key, String servingEngine, SearchResults results) {
+            this.bytes = bytes;
+            this.key = key;
+            this.servingEngine = servingEngine;
+            this.results = results;
+        }
+
+        private static Record decode(byte[] body) throws IOException {
+            final DataInputStream input = new DataInputStream(new ByteArrayInputStream(body));
+            input.readLong();
+            final String key = input.readUTF();
+            final String servingEngine = input.readUTF();
+            final int count = input.readInt();
+            // Every result takes at least the lengths of its three strings, a larger count can only come from a corrupt record
+            if (count < 0 || count > input.available() / 6) {
+                throw new IOException("Record of " + body.length + " bytes claims " + count + " results");
+            }
+            final SearchResults.Builder results = SearchResults.builder(count);
+            for (int i = 0; i < count; i++) {
+                results.add(input.readUTF(), input.readUTF(), input.readUTF());
+            }
+            final byte[] bytes = ByteBuffer.allocate(body.length + 4).putInt(body.length + 4).put(body).array();
+            return new Record(bytes, key, servingEngine, results.build());
+        }
+
+        private SearchResponse toResponse(SearchEngine engine) {
+            for (SearchEngine candidate : Enquiry.instance.getEngines()) {
+                if (candidate.getId().equals(this.servingEngine)) {
+                    return new SearchResponse(candidate, this.results);
+                }
+            }
+            return new SearchResponse(engine, this.results);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites a query into its canonical form, queries with the same canonical form share cache entries and in flight searches.
+ * <p>
+ * Engines compose a pipeline of {@link Step}s from engines.&lt;id&gt;.options.normalize.steps or provide their own normalizer.
+ */
+@FunctionalInterface
+public interface QueryNormalizer {
+
+    /**
+     * The pipeline of engines that do not configure their steps.
+     */
+    QueryNormalizer DEFAULT = of(ImmutableList.of(Step.NFKC.getId(), Step.CASE_FOLD.getId(), Step.WHITESPACE.getId()));
+
+    /**
+     * Normalizes the query.
+     * @param query The query
+     * @return The canonical query
+     */
+    String normalize(String query);
+
+    /**
+     * Composes the steps into a pipeline, each step is applied to the result of the step before it.
+     * @param steps The ids of the steps in order
+     * @return The {@link QueryNormalizer}
+     * @throws IllegalArgumentException If a step does not exist
+     */
+    static QueryNormalizer of(List<String> steps) {
+        final Step[] pipeline = new Step[steps.size()];
+        for (int i = 0; i < pipeline.length; i++) {
+            pipeline[i] = Step.of(steps.get(i));
+        }
+        return of(pipeline);
+    }
+
+    /**
+     * Composes the steps into a pipeline, each step is applied to the result of the step before it.
+     * @param steps The steps in order
+     * @return The {@link QueryNormalizer}
+     */
+    static QueryNormalizer of(Step... steps) {
+        final Step[] pipeline = steps.clone();
+        return query -> {
+            for (Step step : pipeline) {
+                query = step.normalize(query);
+            }
+            return query;
+        };
+    }
+
+    /**
+     * A step of a normalization pipeline.
+     */
+    enum Step implements QueryNormalizer {
+        /**
+         * Unicode compatibility composition, full width letters and ligatures become their plain form.
+         */
+        NFKC("nfkc") {
+            @Override
+            public String normalize(String query) {
+                return Normalizer.isNormalized(query, Normalizer.Form.NFKC) ? query : Normalizer.normalize(query, Normalizer.Form.NFKC);
+            }
+        },
+        /**
+         * Locale independent case folding, upper casing first folds characters such as the German sharp s.
+         */
+        CASE_FOLD("case-fold") {
+            @Override
+            public String normalize(String query) {
+                return query.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+            }
+        },
+        /**
+         * Trims the query and collapses runs of whitespace to a single space.
+         */
+        WHITESPACE("whitespace") {
+            @Override
+            public String normalize(String query) {
+                return WHITESPACE_PATTERN.matcher(query.trim()).replaceAll(" ");
+            }
+        },
+        /**
+         * Removes common English words unless the query consists of nothing else.
+         */
+        STOP_WORDS("stop-words") {
+            @Override
+            public String normalize(String query) {
+                final StringBuilder builder = new StringBuilder(query.length());
+                for (String word : WHITESPACE_PATTERN.split(query.trim())) {
+                    if (!STOP_WORD_SET.contains(word.toLowerCase(Locale.ROOT))) {
+                        builder.append(builder.length() == 0 ? "" : " ").append(word);
+                    }
+                }
+                return builder.length() == 0 ? query : builder.toString();
+            }
+        },
+        /**
+         * Reduces English plurals to their singular form, see Harman's S stemmer.
+         */
+        STEM("stem") {
+            @Override
+            public String normalize(String query) {
+                final StringBuilder builder = new StringBuilder(query.length());
+                for (String word : WHITESPACE_PATTERN.split(query.trim())) {
+                    builder.append(builder.length() == 0 ? "" : " ").append(stem(word));
+                }
+                return builder.toString();
+            }
+        };
+
+        private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+        private static final ImmutableSet<String> STOP_WORD_SET = ImmutableSet.of("a", "an", "and", "are", "as", "at", "be", "by", "for",
+                "from", "in", "is", "it", "of", "on", "or", "the", "to", "with");
+
+        private final String id;
+
+        Step(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Gets the step by its id.
+         * @param id The id
+         * @return The {@link Step}
+         * @throws IllegalArgumentException If no step has the id
+         */
+        public static Step of(String id) {
+            for (Step step : values()) {
+                if (step.id.equalsIgnoreCase(id)) {
+                    return step;
+                }
+            }
+            throw new IllegalArgumentException("Unknown normalization step '" + id + "'");
+        }
+
+        private static String stem(String word) {
+            if (word.length() <= 3) {
+                return word;
+            }
+            final String lower = word.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("ies") && !lower.endsWith("eies") && !lower.endsWith("aies")) {
+                return word.substring(0, word.length() - 3) + (Character.isUpperCase(word.charAt(word.length() - 1)) ? "Y" : "y");
+            }
+            if (lower.endsWith("es") && !lower.endsWith("aes") && !lower.endsWith("ees") && !lower.endsWith("oes")) {
+                return word.substring(0, word.length() - 1);
+            }
+            if (lower.endsWith("s") && !lower.endsWith("us") && !lower.endsWith("ss")) {
+                return word.substring(0, word.length() - 1);
+            }
+            return word;
+        }
+    }
+}
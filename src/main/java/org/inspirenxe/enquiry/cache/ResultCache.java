@@ -0,0 +1,235 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.inspirenxe.enquiry.EngineConfig;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded in-memory cache of search results for a single engine.
+ * <p>
+ * The backing cache is segmented so concurrent searches only contend when they hash to the same segment, and hits/misses are
+ * recorded with striped counters.
+ * <p>
+ * Entries are keyed by the canonical form of the query, see {@link QueryNormalizer}. Each entry remembers the query as it was typed when
+ * it was filled so hits for queries typed differently can be counted as hits gained by normalization.
+ */
+public class ResultCache {
+
+    private final boolean enabled;
+    private final Cache<String, Entry> cache;
+    private final AtomicLong normalizedHits = new AtomicLong();
+
+    public ResultCache(boolean enabled, long ttl, long maxEntries, long maxWeight) {
+        this.enabled = enabled;
+        final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                .recordStats();
+        // Guava only allows one of maximumSize/maximumWeight, weight wins when both are configured
+        if (maxWeight > 0) {
+            builder.maximumWeight(maxWeight).weigher(new ResultWeigher());
+        } else {
+            builder.maximumSize(maxEntries);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * Creates the cache for an engine from the options under engines.&lt;id&gt;.options.cache
+     * @param engineId The id of the engine
+     * @return The {@link ResultCache}
+     */
+    public static ResultCache of(String engineId) {
+        final EngineConfig config = Enquiry.instance.storage.getConfig().getEngine(engineId);
+        return new ResultCache(config.isCacheEnabled(), config.getCacheTtl(), config.getCacheMaxEntries(), config.getCacheMaxWeight());
+    }
+
+    /**
+     * Normalizes a query by trimming, collapsing whitespace and lower casing it.
+     * <p>
+     * This is not the canonical form entries are keyed by, which is configured per engine, but a display form for recorded queries.
+     * @param query The query
+     * @return The normalized query
+     */
+    public static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Gets the key of a page of results for a query.
+     * <p>
+     * The first page is keyed by the canonical query alone, later pages append the page number after a separator that cannot be typed
+     * in a query so they never share an entry with another query.
+     * @param canonical The canonical query, see {@link QueryNormalizer}
+     * @param page The page, starting at 1
+     * @return The key
+     */
+    public static String key(String canonical, int page) {
+        return page == 1 ? canonical : canonical + '\0' + page;
+    }
+
+    /**
+     * Gets the cached response for a key.
+     * @param key The key
+     * @return The response or null if the key is not cached
+     */
+    public SearchResponse get(String key) {
+        return this.get(key, null);
+    }
+
+    /**
+     * Gets the cached response for a key, counting the hit as gained by normalization if the entry was filled by a query typed
+     * differently.
+     * @param key The key
+     * @param query The query as it was typed or null if it is not known
+     * @return The response or null if the key is not cached
+     */
+    public SearchResponse get(String key, String query) {
+        if (!this.enabled) {
+            return null;
+        }
+        final Entry entry = this.cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (query != null && entry.query != null && !query.equals(entry.query)) {
+            this.normalizedHits.incrementAndGet();
+        }
+        return new SearchResponse(entry.engine, entry.results);
+    }
+
+    /**
+     * Caches the response for a key.
+     * @param key The key
+     * @param response The response
+     */
+    public void put(String key, SearchResponse response) {
+        this.put(key, null, response);
+    }
+
+    /**
+     * Caches the response for a key.
+     * @param key The key
+     * @param query The query as it was typed or null if it is not known
+     * @param response The response
+     */
+    public void put(String key, String query, SearchResponse response) {
+        if (this.enabled && response.getResults() != null) {
+            this.cache.put(key, new Entry(query, response.getEngine(), SearchResults.of(response.getResults())));
+        }
+    }
+
+    /**
+     * Discards all cached results.
+     */
+    public void invalidateAll() {
+        this.cache.invalidateAll();
+    }
+
+    /**
+     * Gets the amount of cached queries.
+     * @return The size
+     */
+    public long size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Gets the amount of lookups that were served from the cache.
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return this.cache.stats().hitCount();
+    }
+
+    /**
+     * Gets the amount of lookups that were not served from the cache.
+     * @return The miss count
+     */
+    public long getMissCount() {
+        return this.cache.stats().missCount();
+    }
+
+    /**
+     * Gets the amount of hits for queries typed differently from the query that filled the entry, which would have been misses
+     * without normalization.
+     * @return The normalized hit count
+     */
+    public long getNormalizedHitCount() {
+        return this.normalizedHits.get();
+    }
+
+    /**
+     * Gets a snapshot of the cache statistics.
+     * @return The {@link CacheStats}
+     */
+    public CacheStats getStats() {
+        return this.cache.stats();
+    }
+
+    /**
+     * Gets if results are cached.
+     * @return True if enabled, false if not
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    private static final class Entry {
+
+        final String query;
+        final SearchEngine engine;
+        final SearchResults results;
+
+        Entry(String query, SearchEngine engine, SearchResults results) {
+            this.query = query;
+            this.engine = engine;
+            this.results = results;
+        }
+    }
+
+    /**
+     * Weighs an entry by the approximate amount of bytes it retains.
+     */
+    private static class ResultWeigher implements Weigher<String, Entry> {
+
+        @Override
+        public int weigh(String key, Entry value) {
+            return key.length() + (value.query == null ? 0 : value.query.length()) + value.results.getRetainedSize();
+        }
+    }
+}
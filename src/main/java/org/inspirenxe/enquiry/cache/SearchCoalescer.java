@@ -0,0 +1,90 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.cache;
+
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent searches for the same query into a single upstream call.
+ * <p>
+ * The first search for a query becomes the leader and performs the call, any search for the same query that starts before the
+ * leader finishes shares the leader's response, which is why callers copy it before handing it out.
+ */
+public class SearchCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<SearchResponse>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Searches for the query, joining a search for the same key that is already in flight.
+     * @param key The key of the page of the canonical query, see {@link ResultCache#key(String, int)}
+     * @param loader The loader performing the upstream call when no identical search is in flight
+     * @return The future response
+     */
+    public CompletableFuture<SearchResponse> search(String key, Supplier<CompletableFuture<SearchResponse>> loader) {
+        final CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        final CompletableFuture<SearchResponse> existing = this.inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            this.coalesced.incrementAndGet();
+            return existing;
+        }
+        try {
+            loader.get().whenComplete((response, throwable) -> {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    future.complete(response);
+                }
+                this.inFlight.remove(key, future);
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            this.inFlight.remove(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * Gets the amount of searches currently being performed upstream.
+     * @return The amount of searches in flight
+     */
+    public int getInFlightCount() {
+        return this.inFlight.size();
+    }
+
+    /**
+     * Gets the amount of searches that were served by joining another search.
+     * @return The amount of coalesced searches
+     */
+    public long getCoalescedCount() {
+        return this.coalesced.get();
+    }
+}
@@ -24,30 +24,26 @@
  */
 package org.inspirenxe.enquiry.engine;
 
-
 import com.github.kevinsawicki.http.HttpRequest;
-import com.google.gson.Gson;
-import com.google.gson.annotations.SerializedName;
 import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.JsonResultReader;
 import org.inspirenxe.enquiry.api.engine.SearchEngine;
 import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.Texts;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class BingEngine extends SearchEngine {
 
-    private final String accountKey;
-    @SerializedName("d")
-    private BingData data;
+    private static final JsonResultReader READER = new JsonResultReader("Title", "Description", "Url", "d", "results");
 
     public BingEngine(String id, String... aliases) {
         super(Enquiry.instance.container, id, aliases);
-        this.accountKey = Enquiry.instance.storage.getChildNode("engines.bing.auth.account-key").getString("");
     }
 
     @Override
@@ -67,61 +63,41 @@ public class BingEngine extends SearchEngine {
 
     @Override
     public HttpRequest getRequest(String query) {
-        return HttpRequest.get(getSearchUrl(), true,
+        return getRequest(query, 1);
+    }
+
+    @Override
+    public HttpRequest getRequest(String query, int page) {
+        final String accountKey = getConfig().getAuth("account-key");
+        return Enquiry.instance.transport.get(getSearchUrl(),
                 "Query", "\'" + query + "\'",
                 "$format", "json",
-                "$top", 10)
-                .basic(this.accountKey, this.accountKey)
-                .acceptJson()
-                .acceptCharset(StandardCharsets.UTF_8.name());
+                "$top", getMaxResults(),
+                "$skip", (page - 1) * getMaxResults())
+                .basic(accountKey, accountKey)
+                .acceptJson();
     }
 
     @Override
-    public CopyOnWriteArrayList<? extends SearchResult> getResults(String query) throws IOException {
-        if (this.accountKey.isEmpty()) {
-            throw new IOException("engines.bing.auth.account-key in ./config/enquiry.conf must be set in order to search with Bing!");
-        }
-        final HttpRequest request = getRequest(query);
-        if (request.code() != 200) {
-            throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(this.getName()) + ", Error: " + request
-                    .code());
-        } else if (request.isBodyEmpty()) {
-            throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(this.getName()) + ", Error: Body is "
-                    + "empty.");
-        }
-        return new Gson().fromJson(request.body(), BingEngine.class).data.results;
+    public boolean hasPages() {
+        return true;
     }
 
-    private class BingData {
-
-        @SerializedName("results")
-        private CopyOnWriteArrayList<BingResult> results;
+    @Override
+    public CompletableFuture<SearchResults> search(String query) {
+        return search(query, 1);
     }
 
-    public class BingResult implements SearchResult {
-
-        @SerializedName("Title")
-        private String title;
-
-        @SerializedName("Description")
-        private String description;
-
-        @SerializedName("Url")
-        private String url;
-
-        @Override
-        public String getTitle() {
-            return title;
-        }
-
-        @Override
-        public String getDescription() {
-            return description;
-        }
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page) {
+        return search(query, page, null);
+    }
 
-        @Override
-        public String getUrl() {
-            return url;
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page, Consumer<? super SearchResult> subscriber) {
+        if (getConfig().getAuth("account-key").isEmpty()) {
+            return failed(new IOException("engines.bing.auth.account-key in ./config/enquiry.conf must be set in order to search with Bing!"));
         }
+        return request(query, page, 0, READER, subscriber);
     }
 }
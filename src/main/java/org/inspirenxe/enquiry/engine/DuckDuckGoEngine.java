@@ -24,25 +24,22 @@
  */
 package org.inspirenxe.enquiry.engine;
 
-
 import com.github.kevinsawicki.http.HttpRequest;
-import com.google.gson.Gson;
-import com.google.gson.annotations.SerializedName;
 import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.JsonResultReader;
 import org.inspirenxe.enquiry.api.engine.SearchEngine;
 import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.Texts;
 import org.spongepowered.api.text.format.TextColors;
 
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class DuckDuckGoEngine extends SearchEngine {
 
-    @SerializedName("RelatedTopics")
-    private CopyOnWriteArrayList<DuckDuckGoResult> results;
+    private static final JsonResultReader READER = new JsonResultReader("Text", null, "FirstURL", "RelatedTopics");
 
     public DuckDuckGoEngine(String id, String... aliases) {
         super(Enquiry.instance.container, id, aliases);
@@ -65,54 +62,34 @@ public class DuckDuckGoEngine extends SearchEngine {
 
     @Override
     public HttpRequest getRequest(String query) {
-        return HttpRequest.get(getSearchUrl(), true,
+        return Enquiry.instance.transport.get(getSearchUrl(),
                 "q", query,
                 "format", "json",
                 "no_html", "1",
                 "t", "enquiry")
                 .acceptJson()
-                .acceptCharset(StandardCharsets.UTF_8.name())
                 .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/42.0.2311.135 Safari/537.36 " +
                         "Edge/12.10532");
     }
 
     @Override
-    public CopyOnWriteArrayList<? extends SearchResult> getResults(String query) throws IOException {
-        final HttpRequest request = getRequest(query);
-        if (request.code() != 200) {
-            throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(this.getName()) + ", Error: " + request
-                    .code());
-        } else if (request.isBodyEmpty()) {
-            throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(this.getName()) + ", Error: Body is "
-                    + "empty.");
-        }
-        return new Gson().fromJson(request.body(), DuckDuckGoEngine.class).results;
+    public boolean hasPages() {
+        return true;
     }
 
-    public class DuckDuckGoResult implements SearchResult {
-
-        @SerializedName("Text")
-        private String title;
-
-        @SerializedName("")
-        private String description;
-
-        @SerializedName("FirstURL")
-        private String url;
-
-        @Override
-        public String getTitle() {
-            return title;
-        }
+    @Override
+    public CompletableFuture<SearchResults> search(String query) {
+        return search(query, 1);
+    }
 
-        @Override
-        public String getDescription() {
-            return description;
-        }
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page) {
+        return search(query, page, null);
+    }
 
-        @Override
-        public String getUrl() {
-            return url;
-        }
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page, Consumer<? super SearchResult> subscriber) {
+        // Every related topic is returned at once so later pages are read further into the same response
+        return request(query, page, (page - 1) * getMaxResults(), READER, subscriber);
     }
 }
@@ -25,32 +25,30 @@
 package org.inspirenxe.enquiry.engine;
 
 import com.github.kevinsawicki.http.HttpRequest;
-import com.google.gson.Gson;
-import com.google.gson.annotations.SerializedName;
+import org.inspirenxe.enquiry.EngineConfig;
 import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.JsonResultReader;
 import org.inspirenxe.enquiry.api.engine.SearchEngine;
 import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.Texts;
 import org.spongepowered.api.text.format.TextColors;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class GoogleEngine extends SearchEngine {
 
-    private final String apiKey, searchId;
+    private static final JsonResultReader READER = new JsonResultReader("title", "snippet", "link", "items");
+    private static final int MAX_NUM = 10;
+    private static final int MAX_START = 100;
 
     public GoogleEngine(String id, String... aliases) {
         super(Enquiry.instance.container, id, aliases);
-        this.apiKey = Enquiry.instance.storage.getChildNode("engines.google.auth.api-key").getString("");
-        this.searchId = Enquiry.instance.storage.getChildNode("engines.google.auth.search-id").getString("");
     }
 
-    @SerializedName("items")
-    private CopyOnWriteArrayList<GoogleResult> results;
-
     @Override
     public Text getName() {
         return Texts.of(TextColors.BLUE, "G",
@@ -73,58 +71,55 @@ public class GoogleEngine extends SearchEngine {
 
     @Override
     public HttpRequest getRequest(String query) {
-        return HttpRequest.get(getSearchUrl(), true,
-                "key", this.apiKey,
-                "cx", this.searchId,
-                "fields", "items(title,link,snippet)",
-                "q", query)
-                .acceptJson()
-                .acceptCharset(StandardCharsets.UTF_8.name());
+        return getRequest(query, 1);
     }
 
     @Override
-    public CopyOnWriteArrayList<? extends SearchResult> getResults(String query) throws IOException {
-        if (this.apiKey.isEmpty()) {
-            throw new IOException("engines.google.auth.api-key in ./config/enquiry.conf must be set in order to search with Google!");
-        }
-        if (this.searchId.isEmpty()) {
-            throw new IOException("engines.google.auth.search-id in ./config/enquiry.conf must be set in order to search with Google!");
-        }
-        final HttpRequest request = getRequest(query);
-        if (request.code() != 200) {
-            throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(this.getName()) + ", Error: " + request
-                    .code());
-        } else if (request.isBodyEmpty()) {
-            throw new IOException("An error occurred while attempting to get results from " + Texts.toPlain(this.getName()) + ", Error: Body is "
-                    + "empty.");
-        }
-        return new Gson().fromJson(request.body(), GoogleEngine.class).results;
+    public int getPageSize() {
+        return Math.min(MAX_NUM, getMaxResults());
     }
 
-    public class GoogleResult implements SearchResult {
+    @Override
+    public HttpRequest getRequest(String query, int page) {
+        final int num = getPageSize();
+        return Enquiry.instance.transport.get(getSearchUrl(),
+                "key", getConfig().getAuth("api-key"),
+                "cx", getConfig().getAuth("search-id"),
+                "fields", "items(title,link,snippet)",
+                "num", num,
+                "start", (page - 1) * num + 1,
+                "q", query)
+                .acceptJson();
+    }
 
-        @SerializedName("title")
-        private String title;
+    @Override
+    public boolean hasPages() {
+        return true;
+    }
 
-        @SerializedName("snippet")
-        private String description;
+    @Override
+    public CompletableFuture<SearchResults> search(String query) {
+        return search(query, 1);
+    }
 
-        @SerializedName("link")
-        private String url;
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page) {
+        return search(query, page, null);
+    }
 
-        @Override
-        public String getTitle() {
-            return title;
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page, Consumer<? super SearchResult> subscriber) {
+        final EngineConfig config = getConfig();
+        if (config.getAuth("api-key").isEmpty()) {
+            return failed(new IOException("engines.google.auth.api-key in ./config/enquiry.conf must be set in order to search with Google!"));
         }
-
-        @Override
-        public String getDescription() {
-            return description;
+        if (config.getAuth("search-id").isEmpty()) {
+            return failed(new IOException("engines.google.auth.search-id in ./config/enquiry.conf must be set in order to search with Google!"));
         }
-
-        @Override
-        public String getUrl() {
-            return url;
+        if ((page - 1) * getPageSize() >= MAX_START) {
+            // The custom search API does not return results past the first hundred
+            return CompletableFuture.completedFuture(SearchResults.EMPTY);
         }
+        return request(query, page, 0, READER, subscriber);
     }
 }
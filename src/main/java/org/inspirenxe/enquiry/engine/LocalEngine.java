@@ -0,0 +1,176 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.engine;
+
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Searches a directory of markdown and text documents on the server, such as its rules or wiki, without any network access.
+ * <p>
+ * The {@link LocalIndex} is built on the first search and updated when the configuration is reloaded. Results link to the documents
+ * under the base URL they are published at, the engine is only registered once it is set.
+ */
+public class LocalEngine extends SearchEngine {
+
+    private final File root;
+    private volatile LocalIndex index;
+
+    /**
+     * Creates the engine.
+     * @param id The id
+     * @param root The directory relative paths of the options are resolved against
+     * @param aliases The aliases
+     */
+    public LocalEngine(String id, File root, String... aliases) {
+        super(Enquiry.instance.container, id, aliases);
+        this.root = root;
+    }
+
+    @Override
+    public Text getName() {
+        return Texts.of(TextColors.DARK_AQUA, "Local");
+    }
+
+    /**
+     * Gets the URL the documents are published at from the options under engines.&lt;id&gt;.options.base-url.
+     * @return The URL or an empty string if not set
+     */
+    @Override
+    public String getUrl() {
+        return getConfig().getOption("base-url", "");
+    }
+
+    @Override
+    public String getSearchUrl() {
+        return getDirectory().toURI().toString();
+    }
+
+    @Override
+    public boolean hasPages() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<SearchResults> search(String query) {
+        return search(query, 1);
+    }
+
+    @Override
+    public CompletableFuture<SearchResults> search(String query, int page) {
+        if (getUrl().isEmpty()) {
+            // Linking to the files themselves would show the paths of the server to players
+            return failed(new IOException("engines." + getId() + ".options.base-url is not set"));
+        }
+        final LocalIndex index;
+        try {
+            index = getIndex();
+        } catch (IOException e) {
+            return failed(e);
+        }
+        final int maxResults = getMaxResults();
+        final List<LocalIndex.Document> documents = index.search(query, (page - 1) * maxResults, maxResults);
+        final SearchResults.Builder results = SearchResults.builder(documents.size());
+        for (LocalIndex.Document document : documents) {
+            results.add(document.getTitle(), document.getDescription(), getUrl(document));
+        }
+        return CompletableFuture.completedFuture(results.build());
+    }
+
+    @Override
+    public void reload() {
+        if (this.index == null) {
+            // Not searched with yet, it is built with the new options on the first search
+            return;
+        }
+        try {
+            Enquiry.instance.executor.execute(() -> {
+                try {
+                    this.update();
+                } catch (IOException e) {
+                    Enquiry.instance.logger.error("Could not update the index of " + getDirectory(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Enquiry.instance.logger.warn("Enquiry is busy, the index of " + getDirectory() + " is updated on the next reload");
+        }
+    }
+
+    /**
+     * Gets the directory of documents from the options under engines.&lt;id&gt;.options.directory.
+     * @return The directory
+     */
+    public File getDirectory() {
+        final File directory = new File(getConfig().getOption("directory", "enquiry-local"));
+        return directory.isAbsolute() ? directory : new File(this.root, directory.getPath());
+    }
+
+    private LocalIndex getIndex() throws IOException {
+        final LocalIndex index = this.index;
+        return index == null ? this.update() : index;
+    }
+
+    private synchronized LocalIndex update() throws IOException {
+        final LocalIndex previous = this.index == null ? LocalIndex.open(new File(this.root, "enquiry-index"), getId()) : this.index;
+        final LocalIndex index = previous.update(getDirectory());
+        if (index != previous || this.index == null) {
+            Enquiry.instance.logger.info("Indexed " + index.size() + " document(s) in " + getDirectory());
+        }
+        this.index = index;
+        return index;
+    }
+
+    private String getUrl(LocalIndex.Document document) {
+        final String baseUrl = getUrl();
+        return (baseUrl.endsWith("/") ? baseUrl : baseUrl + "/") + encodePath(document.getPath());
+    }
+
+    /**
+     * Percent-encodes the segments of a relative path so characters such as spaces, '#', '?', '%' and letters outside of ASCII link to
+     * the document rather than changing what the URL points at.
+     * @param path The path, separated by slashes
+     * @return The encoded path
+     */
+    static String encodePath(String path) {
+        try {
+            // Rooted so a colon in the first segment is not read as a scheme
+            return new URI(null, null, "/" + path, null).toASCIIString().substring(1);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Could not encode " + path, e);
+        }
+    }
+}
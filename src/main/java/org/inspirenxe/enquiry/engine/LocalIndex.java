@@ -0,0 +1,507 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.engine;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * An inverted index of a directory of documents, ranked with BM25.
+ * <p>
+ * The index is stored in a single file holding the documents, then every term followed by its posting list of document number and term
+ * frequency pairs. Documents and terms are read into memory when the file is opened, posting lists are read from the memory mapped file
+ * while searching. An index never changes, updating it writes the next generation of the index to a new file in which only documents
+ * added or changed since are analyzed again, the postings of the others are carried over. A file is never replaced while it may be
+ * mapped, files of older generations are deleted once nothing maps them anymore.
+ */
+public final class LocalIndex {
+
+    private static final int MAGIC = 0x456E5149;
+    private static final int VERSION = 1;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int DESCRIPTION_LENGTH = 160;
+    private static final Set<String> EXTENSIONS = ImmutableSet.of("md", "markdown", "txt");
+    private static final String EXTENSION = ".dat";
+
+    private final File store;
+    private final String name;
+    private final long generation;
+    private final List<Document> documents;
+    private final Map<String, Term> terms;
+    private final ByteBuffer postings;
+    private final float[] norms;
+
+    private LocalIndex(File store, String name, long generation, List<Document> documents, Map<String, Term> terms, ByteBuffer postings) {
+        this.store = store;
+        this.name = name;
+        this.generation = generation;
+        this.documents = documents;
+        this.terms = terms;
+        this.postings = postings;
+        long total = 0;
+        for (Document document : documents) {
+            total += document.length;
+        }
+        final float averageLength = documents.isEmpty() ? 1 : Math.max(1, (float) total / documents.size());
+        this.norms = new float[documents.size()];
+        for (int i = 0; i < this.norms.length; i++) {
+            this.norms[i] = K1 * (1 - B + B * documents.get(i).length / averageLength);
+        }
+    }
+
+    /**
+     * Opens the latest generation of a stored index.
+     * @param store The directory the index is stored in
+     * @param name The name of the index
+     * @return The {@link LocalIndex}, empty if no generation is stored or the latest is not a valid index
+     * @throws IOException If the file could not be mapped
+     */
+    public static LocalIndex open(File store, String name) throws IOException {
+        long latest = 0;
+        final File[] files = store.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                latest = Math.max(latest, generation(file, name));
+            }
+        }
+        if (latest == 0) {
+            return empty(store, name, 0);
+        }
+        final LocalIndex index = open(store, name, latest);
+        index.sweep();
+        return index;
+    }
+
+    private static LocalIndex empty(File store, String name, long generation) {
+        return new LocalIndex(store, name, generation, ImmutableList.of(), ImmutableMap.of(), ByteBuffer.allocate(0));
+    }
+
+    private static LocalIndex open(File store, String name, long generation) throws IOException {
+        final File file = file(store, name, generation);
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final ByteBuffer input = buffer.duplicate();
+        try {
+            if (input.getInt() != MAGIC || input.getInt() != VERSION) {
+                return empty(store, name, generation);
+            }
+            final int documentCount = input.getInt();
+            final int termCount = input.getInt();
+            final List<Document> documents = Lists.newArrayListWithCapacity(documentCount);
+            for (int i = 0; i < documentCount; i++) {
+                documents.add(new Document(string(input), input.getLong(), input.getLong(), input.getInt(), string(input), string(input)));
+            }
+            final Map<String, Term> terms = Maps.newHashMapWithExpectedSize(termCount);
+            for (int i = 0; i < termCount; i++) {
+                final String term = string(input);
+                final int frequency = input.getInt();
+                terms.put(term, new Term(frequency, input.position()));
+                input.position(input.position() + frequency * 8);
+            }
+            return new LocalIndex(store, name, generation, Collections.unmodifiableList(documents), terms, buffer);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            // Truncated or corrupt, it is rebuilt from the documents into the next generation
+            return empty(store, name, generation);
+        }
+    }
+
+    /**
+     * Indexes the documents of a directory, analyzing only documents that were added or changed since this index was built.
+     * @param directory The directory of documents
+     * @return The next generation of the index or this index if no document changed
+     * @throws IOException If a document could not be read or the index could not be stored
+     */
+    public LocalIndex update(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        final Map<String, File> files = Maps.newTreeMap();
+        collect(directory, directory, files);
+        final Map<String, Integer> previous = Maps.newHashMapWithExpectedSize(this.documents.size());
+        for (int i = 0; i < this.documents.size(); i++) {
+            previous.put(this.documents.get(i).path, i);
+        }
+        final List<Document> documents = Lists.newArrayListWithCapacity(files.size());
+        final List<Map<String, Integer>> analyzed = Lists.newArrayListWithCapacity(files.size());
+        final int[] kept = new int[this.documents.size()];
+        Arrays.fill(kept, -1);
+        boolean changed = files.size() != this.documents.size();
+        for (Map.Entry<String, File> entry : files.entrySet()) {
+            final File source = entry.getValue();
+            final Integer number = previous.get(entry.getKey());
+            if (number != null && this.documents.get(number).modified == source.lastModified()
+                    && this.documents.get(number).size == source.length()) {
+                kept[number] = documents.size();
+                documents.add(this.documents.get(number));
+                analyzed.add(null);
+            } else {
+                final Map<String, Integer> frequencies = Maps.newHashMap();
+                documents.add(analyze(entry.getKey(), source, frequencies));
+                analyzed.add(frequencies);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return this;
+        }
+        final Map<String, Postings> postings = Maps.newTreeMap();
+        for (Map.Entry<String, Term> entry : this.terms.entrySet()) {
+            final Term term = entry.getValue();
+            for (int i = 0; i < term.frequency; i++) {
+                final int position = term.position + i * 8;
+                final int document = kept[this.postings.getInt(position)];
+                if (document >= 0) {
+                    postings.computeIfAbsent(entry.getKey(), key -> new Postings()).add(document, this.postings.getInt(position + 4));
+                }
+            }
+        }
+        for (int i = 0; i < analyzed.size(); i++) {
+            final Map<String, Integer> frequencies = analyzed.get(i);
+            if (frequencies != null) {
+                for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                    postings.computeIfAbsent(entry.getKey(), key -> new Postings()).add(i, entry.getValue());
+                }
+            }
+        }
+        final long generation = this.generation + 1;
+        write(this.store, file(this.store, this.name, generation), documents, postings);
+        final LocalIndex index = open(this.store, this.name, generation);
+        index.sweep();
+        return index;
+    }
+
+    /**
+     * Searches the documents, ranking them by their BM25 score for the terms of the query.
+     * @param query The query
+     * @param skip The amount of best ranked documents to skip
+     * @param limit The maximum amount of documents
+     * @return The documents, best ranked first
+     */
+    public List<Document> search(String query, int skip, int limit) {
+        if (this.documents.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final Set<String> tokens = Sets.newHashSet();
+        tokenize(query, tokens::add);
+        final int count = this.documents.size();
+        final float[] scores = new float[count];
+        for (String token : tokens) {
+            final Term term = this.terms.get(token);
+            if (term == null) {
+                continue;
+            }
+            final float idf = (float) Math.log(1 + (count - term.frequency + 0.5) / (term.frequency + 0.5));
+            for (int i = 0; i < term.frequency; i++) {
+                final int position = term.position + i * 8;
+                final int document = this.postings.getInt(position);
+                final int frequency = this.postings.getInt(position + 4);
+                scores[document] += idf * frequency * (K1 + 1) / (frequency + this.norms[document]);
+            }
+        }
+        return IntStream.range(0, count)
+                .filter(document -> scores[document] > 0)
+                .boxed()
+                .sorted((first, second) -> Float.compare(scores[second], scores[first]))
+                .skip(skip)
+                .limit(limit)
+                .map(this.documents::get)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the amount of documents indexed.
+     * @return The amount of documents
+     */
+    public int size() {
+        return this.documents.size();
+    }
+
+    /**
+     * Deletes the files of older generations of the index.
+     * <p>
+     * Searches in flight may still read an older generation. Where a mapped file can be deleted the mapping stays valid until it is
+     * dropped, where it can not the file is left and deleting it is tried again on the next update.
+     */
+    private void sweep() {
+        final File[] files = this.store.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final long generation = generation(file, this.name);
+            if (generation >= 0 && generation < this.generation) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException ignored) {
+                    // Still mapped
+                }
+            }
+        }
+    }
+
+    private static File file(File store, String name, long generation) {
+        return new File(store, name + "." + generation + EXTENSION);
+    }
+
+    /**
+     * Gets the generation of an index stored in a file.
+     * @param file The file
+     * @param name The name of the index
+     * @return The generation, 0 if the file is of an index without generations or -1 if it is not of the index
+     */
+    private static long generation(File file, String name) {
+        final String fileName = file.getName();
+        if (!fileName.startsWith(name + ".") || !fileName.endsWith(EXTENSION)) {
+            return -1;
+        }
+        final String generation = fileName.substring(name.length() + 1, fileName.length() - EXTENSION.length());
+        if (generation.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(generation));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void collect(File root, File directory, Map<String, File> files) {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            final String name = child.getName();
+            if (name.startsWith(".")) {
+                continue;
+            }
+            if (child.isDirectory()) {
+                collect(root, child, files);
+            } else if (EXTENSIONS.contains(name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH))) {
+                files.put(root.toURI().relativize(child.toURI()).getPath(), child);
+            }
+        }
+    }
+
+    private static Document analyze(String path, File source, Map<String, Integer> frequencies) throws IOException {
+        final long modified = source.lastModified();
+        final long size = source.length();
+        final String text = new String(Files.readAllBytes(source.toPath()), StandardCharsets.UTF_8);
+        String title = null;
+        String description = null;
+        for (String line : text.split("\\r?\\n")) {
+            final String trimmed = line.trim();
+            if (trimmed.startsWith("#")) {
+                final String heading = trimmed.replaceFirst("^#+\\s*", "");
+                if (title == null && !heading.isEmpty()) {
+                    title = heading;
+                }
+            } else if (description == null && !trimmed.isEmpty()) {
+                description = trimmed;
+            }
+            if (title != null && description != null) {
+                break;
+            }
+        }
+        if (title == null) {
+            final String name = source.getName();
+            title = name.substring(0, name.lastIndexOf('.'));
+        }
+        if (description == null) {
+            description = "";
+        } else if (description.length() > DESCRIPTION_LENGTH) {
+            description = description.substring(0, DESCRIPTION_LENGTH) + "...";
+        }
+        final int length = tokenize(text, token -> frequencies.merge(token, 1, Integer::sum));
+        return new Document(path, modified, size, length, title, description);
+    }
+
+    /**
+     * Splits text into lower case runs of letters and digits.
+     * @param text The text
+     * @param consumer The consumer of each token
+     * @return The amount of tokens
+     */
+    private static int tokenize(String text, Consumer<String> consumer) {
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            final boolean part = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (part && start < 0) {
+                start = i;
+            } else if (!part && start >= 0) {
+                consumer.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+                count++;
+                start = -1;
+            }
+        }
+        return count;
+    }
+
+    private static void write(File store, File file, List<Document> documents, Map<String, Postings> postings) throws IOException {
+        if (!store.exists() && !store.mkdirs()) {
+            throw new IOException("Could not create " + store);
+        }
+        final File temporary = new File(store, file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(documents.size());
+            output.writeInt(postings.size());
+            for (Document document : documents) {
+                string(output, document.path);
+                output.writeLong(document.modified);
+                output.writeLong(document.size);
+                output.writeInt(document.length);
+                string(output, document.title);
+                string(output, document.description);
+            }
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                final Postings list = entry.getValue();
+                string(output, entry.getKey());
+                output.writeInt(list.size);
+                for (int i = 0; i < list.size * 2; i++) {
+                    output.writeInt(list.data[i]);
+                }
+            }
+        }
+        // The file of a new generation is only ever opened once it was written completely
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String string(ByteBuffer input) {
+        final byte[] bytes = new byte[input.getInt()];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void string(DataOutputStream output, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * A document of the index.
+     */
+    public static final class Document {
+
+        private final String path;
+        private final long modified;
+        private final long size;
+        private final int length;
+        private final String title;
+        private final String description;
+
+        Document(String path, long modified, long size, int length, String title, String description) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.length = length;
+            this.title = title;
+            this.description = description;
+        }
+
+        /**
+         * Gets the path of the document relative to the indexed directory, separated by slashes.
+         * @return The path
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the first heading of the document or its file name if it has none.
+         * @return The title
+         */
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * Gets the first paragraph line of the document, shortened if long.
+         * @return The description
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private static final class Term {
+
+        private final int frequency;
+        private final int position;
+
+        Term(int frequency, int position) {
+            this.frequency = frequency;
+            this.position = position;
+        }
+    }
+
+    private static final class Postings {
+
+        private int[] data = new int[8];
+        private int size;
+
+        void add(int document, int frequency) {
+            if (this.data.length < this.size * 2 + 2) {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            }
+            this.data[this.size * 2] = document;
+            this.data[this.size * 2 + 1] = frequency;
+            this.size++;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.metrics;
+
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes the metrics of Enquiry and of each engine as MXBeans, under org.inspirenxe.enquiry:type=Enquiry and
+ * org.inspirenxe.enquiry:type=Engine,name=&lt;id&gt;.
+ */
+public class MetricsExporter {
+
+    private static final String DOMAIN = "org.inspirenxe.enquiry";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers the MXBeans of Enquiry and of the engines.
+     * @param engines The engines
+     */
+    public void register(Collection<SearchEngine> engines) {
+        this.register(new EnquiryStats(), DOMAIN + ":type=Enquiry");
+        for (SearchEngine engine : engines) {
+            this.register(new EngineStats(engine), DOMAIN + ":type=Engine,name=" + ObjectName.quote(engine.getId()));
+        }
+    }
+
+    /**
+     * Unregisters every MXBean registered.
+     */
+    public void unregister() {
+        for (ObjectName name : this.registered) {
+            try {
+                this.server.unregisterMBean(name);
+            } catch (JMException e) {
+                Enquiry.instance.logger.debug("Could not unregister " + name, e);
+            }
+        }
+        this.registered.clear();
+    }
+
+    private void register(Object bean, String name) {
+        try {
+            final ObjectName objectName = new ObjectName(name);
+            if (this.server.isRegistered(objectName)) {
+                // Left behind by a previous server in the same JVM
+                this.server.unregisterMBean(objectName);
+            }
+            this.server.registerMBean(bean, objectName);
+            this.registered.add(objectName);
+        } catch (JMException e) {
+            Enquiry.instance.logger.warn("Could not register " + name, e);
+        }
+    }
+
+    /**
+     * Builds a map of a statistic of the histogram of each stage, keyed by the id of the stage.
+     * @param metrics The metrics
+     * @param percentile The percentile or a negative number for the maximum
+     * @return The map
+     */
+    static Map<String, Long> stages(SearchMetrics metrics, double percentile) {
+        final Map<String, Long> stages = new LinkedHashMap<>();
+        for (SearchMetrics.Stage stage : SearchMetrics.Stage.values()) {
+            final Histogram histogram = metrics.getHistogram(stage);
+            stages.put(stage.getId(), percentile < 0 ? histogram.getMax() : histogram.percentile(percentile));
+        }
+        return stages;
+    }
+
+    /**
+     * The metrics of Enquiry shared by every engine.
+     */
+    public interface EnquiryMXBean {
+
+        int getQueueDepth();
+
+        int getActiveCount();
+
+        long getRejectedCount();
+
+        int getDeliveryQueueDepth();
+
+        long getDeliveredCount();
+
+        long getDroppedCount();
+
+        long getDiskCacheHitCount();
+
+        long getDiskCacheMissCount();
+
+        long getPlayerRateLimitedCount();
+
+        long getPrefetchedCount();
+    }
+
+    /**
+     * The metrics of an engine, durations are in microseconds.
+     */
+    public interface EngineMXBean {
+
+        long getSuccessCount();
+
+        long getFailureCount();
+
+        Map<String, Long> getFailureCounts();
+
+        long getCancelledCount();
+
+        long getResultCount();
+
+        long getBytesReceived();
+
+        Map<String, Long> getStageCounts();
+
+        Map<String, Long> getStageP50();
+
+        Map<String, Long> getStageP95();
+
+        Map<String, Long> getStageP99();
+
+        Map<String, Long> getStageMax();
+
+        int getActiveCount();
+
+        long getCacheSize();
+
+        long getCacheHitCount();
+
+        long getCacheMissCount();
+
+        long getCacheNormalizedHitCount();
+
+        long getCoalescedCount();
+
+        String getCircuitState();
+
+        double getErrorRate();
+
+        long getCircuitOpenedCount();
+
+        long getCircuitRejectedCount();
+
+        long getHedgedCount();
+
+        long getHedgeWonCount();
+
+        long getHedgeRejectedCount();
+
+        long getRateLimitedCount();
+
+        long getQuotaUsed();
+
+        int getDailyQuota();
+    }
+
+    private static class EnquiryStats implements EnquiryMXBean {
+
+        @Override
+        public int getQueueDepth() {
+            return Enquiry.instance.executor.getQueueDepth();
+        }
+
+        @Override
+        public int getActiveCount() {
+            return Enquiry.instance.executor.getActiveCount();
+        }
+
+        @Override
+        public long getRejectedCount() {
+            return Enquiry.instance.executor.getRejectedCount();
+        }
+
+        @Override
+        public int getDeliveryQueueDepth() {
+            return Enquiry.instance.delivery.getQueueDepth();
+        }
+
+        @Override
+        public long getDeliveredCount() {
+            return Enquiry.instance.delivery.getDeliveredCount();
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return Enquiry.instance.delivery.getDroppedCount();
+        }
+
+        @Override
+        public long getDiskCacheHitCount() {
+            return Enquiry.instance.diskCache.getHitCount();
+        }
+
+        @Override
+        public long getDiskCacheMissCount() {
+            return Enquiry.instance.diskCache.getMissCount();
+        }
+
+        @Override
+        public long getPlayerRateLimitedCount() {
+            return Enquiry.instance.playerRateLimiter.getLimitedCount();
+        }
+
+        @Override
+        public long getPrefetchedCount() {
+            return Enquiry.instance.sessions.getPrefetchedCount();
+        }
+    }
+
+    private static class EngineStats implements EngineMXBean {
+
+        private final SearchEngine engine;
+
+        EngineStats(SearchEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public long getSuccessCount() {
+            return this.engine.getMetrics().getSuccessCount();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return this.engine.getMetrics().getFailureCount();
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts() {
+            final Map<String, Long> failures = new LinkedHashMap<>();
+            for (SearchFailureEvent.Reason reason : SearchFailureEvent.Reason.values()) {
+                failures.put(reason.name(), this.engine.getMetrics().getFailureCount(reason));
+            }
+            return failures;
+        }
+
+        @Override
+        public long getCancelledCount() {
+            return this.engine.getMetrics().getCancelledCount();
+        }
+
+        @Override
+        public long getResultCount() {
+            return this.engine.getMetrics().getResultCount();
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return this.engine.getMetrics().getBytesReceived();
+        }
+
+        @Override
+        public Map<String, Long> getStageCounts() {
+            final Map<String, Long> counts = new LinkedHashMap<>();
+            for (SearchMetrics.Stage stage : SearchMetrics.Stage.values()) {
+                counts.put(stage.getId(), this.engine.getMetrics().getHistogram(stage).getCount());
+            }
+            return counts;
+        }
+
+        @Override
+        public Map<String, Long> getStageP50() {
+            return stages(this.engine.getMetrics(), 50);
+        }
+
+        @Override
+        public Map<String, Long> getStageP95() {
+            return stages(this.engine.getMetrics(), 95);
+        }
+
+        @Override
+        public Map<String, Long> getStageP99() {
+            return stages(this.engine.getMetrics(), 99);
+        }
+
+        @Override
+        public Map<String, Long> getStageMax() {
+            return stages(this.engine.getMetrics(), -1);
+        }
+
+        @Override
+        public int getActiveCount() {
+            return Enquiry.instance.executor.getActiveCount(this.engine);
+        }
+
+        @Override
+        public long getCacheSize() {
+            return this.engine.getCache().size();
+        }
+
+        @Override
+        public long getCacheHitCount() {
+            return this.engine.getCache().getHitCount();
+        }
+
+        @Override
+        public long getCacheMissCount() {
+            return this.engine.getCache().getMissCount();
+        }
+
+        @Override
+        public long getCacheNormalizedHitCount() {
+            return this.engine.getCache().getNormalizedHitCount();
+        }
+
+        @Override
+        public long getCoalescedCount() {
+            return this.engine.getCoalescer().getCoalescedCount();
+        }
+
+        @Override
+        public String getCircuitState() {
+            return this.engine.getCircuitBreaker().getState().name();
+        }
+
+        @Override
+        public double getErrorRate() {
+            return this.engine.getCircuitBreaker().getErrorRate();
+        }
+
+        @Override
+        public long getCircuitOpenedCount() {
+            return this.engine.getCircuitBreaker().getOpenedCount();
+        }
+
+        @Override
+        public long getCircuitRejectedCount() {
+            return this.engine.getCircuitBreaker().getRejectedCount();
+        }
+
+        @Override
+        public long getHedgedCount() {
+            return this.engine.getHedgePolicy().getHedgedCount();
+        }
+
+        @Override
+        public long getHedgeWonCount() {
+            return this.engine.getHedgePolicy().getWonCount();
+        }
+
+        @Override
+        public long getHedgeRejectedCount() {
+            return this.engine.getHedgePolicy().getRejectedCount();
+        }
+
+        @Override
+        public long getRateLimitedCount() {
+            return this.engine.getRateLimiter().getLimitedCount();
+        }
+
+        @Override
+        public long getQuotaUsed() {
+            return this.engine.getRateLimiter().getQuotaUsed();
+        }
+
+        @Override
+        public int getDailyQuota() {
+            return this.engine.getRateLimiter().getDailyQuota();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.metrics;
+
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of the searches of an engine.
+ * <p>
+ * Each {@link Stage} of a search has its own {@link Histogram}, alongside counters of how searches ended, the results found and the bytes
+ * received from upstream.
+ */
+public class SearchMetrics {
+
+    private final Histogram[] stages = new Histogram[Stage.values().length];
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLongArray failures = new AtomicLongArray(SearchFailureEvent.Reason.values().length);
+    private final AtomicLong cancellations = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public SearchMetrics() {
+        for (int i = 0; i < this.stages.length; i++) {
+            this.stages[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records the duration of a stage that started at the time.
+     * @param stage The stage
+     * @param start The time the stage started at, from {@link System#nanoTime()}
+     */
+    public void recordSince(Stage stage, long start) {
+        this.stages[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+
+    /**
+     * Records a successful search.
+     * @param results The amount of results shown
+     */
+    public void success(int results) {
+        this.successes.incrementAndGet();
+        this.results.addAndGet(results);
+    }
+
+    /**
+     * Records a failed search.
+     * @param reason The reason the search failed
+     */
+    public void failure(SearchFailureEvent.Reason reason) {
+        this.failures.incrementAndGet(reason.ordinal());
+    }
+
+    /**
+     * Records a search cancelled by an event listener.
+     */
+    public void cancelled() {
+        this.cancellations.incrementAndGet();
+    }
+
+    /**
+     * Records bytes received from upstream.
+     * @param bytes The amount of bytes
+     */
+    public void received(long bytes) {
+        this.bytes.addAndGet(bytes);
+    }
+
+    /**
+     * Gets the {@link Histogram} of a stage.
+     * @param stage The stage
+     * @return The {@link Histogram}
+     */
+    public Histogram getHistogram(Stage stage) {
+        return this.stages[stage.ordinal()];
+    }
+
+    /**
+     * Gets the amount of successful searches.
+     * @return The success count
+     */
+    public long getSuccessCount() {
+        return this.successes.get();
+    }
+
+    /**
+     * Gets the amount of searches that failed for the reason.
+     * @param reason The reason
+     * @return The failure count
+     */
+    public long getFailureCount(SearchFailureEvent.Reason reason) {
+        return this.failures.get(reason.ordinal());
+    }
+
+    /**
+     * Gets the amount of failed searches.
+     * @return The failure count
+     */
+    public long getFailureCount() {
+        long total = 0;
+        for (int i = 0; i < this.failures.length(); i++) {
+            total += this.failures.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the amount of searches cancelled by event listeners.
+     * @return The cancelled count
+     */
+    public long getCancelledCount() {
+        return this.cancellations.get();
+    }
+
+    /**
+     * Gets the amount of results shown.
+     * @return The result count
+     */
+    public long getResultCount() {
+        return this.results.get();
+    }
+
+    /**
+     * Gets the amount of bytes received from upstream.
+     * @return The bytes received
+     */
+    public long getBytesReceived() {
+        return this.bytes.get();
+    }
+
+    /**
+     * A stage of a search.
+     */
+    public enum Stage {
+        /**
+         * Waiting for a search thread after the command was run.
+         */
+        QUEUE_WAIT("queue-wait"),
+        /**
+         * Posting the {@link org.inspirenxe.enquiry.api.event.SearchPreEvent}.
+         */
+        PRE_EVENT("pre-event"),
+        /**
+         * Opening the connection upstream, near zero when a pooled connection is reused.
+         */
+        CONNECT("connect"),
+        /**
+         * Waiting for the response upstream once connected.
+         */
+        FIRST_BYTE("first-byte"),
+        /**
+         * Reading and parsing the response body.
+         */
+        PARSE("parse"),
+        /**
+         * Rendering the result lines.
+         */
+        RENDER("render"),
+        /**
+         * Waiting for the server thread to send the results.
+         */
+        DELIVER("deliver"),
+        /**
+         * From the command being run until the first result was queued for the player, only recorded when results are streamed.
+         */
+        FIRST_RESULT("first-result"),
+        /**
+         * From the command being run until the results were sent.
+         */
+        TOTAL("total");
+
+        private final String id;
+
+        Stage(String id) {
+            this.id = id;
+        }
+
+        /**
+         * Gets the id of the stage.
+         * @return The id
+         */
+        public String getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import org.inspirenxe.enquiry.EngineConfig;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling an engine's upstream after it keeps failing.
+ * <p>
+ * The breaker opens after a configured amount of consecutive failures or once the error rate of the most recent calls reaches the
+ * configured rate. While open, searches fail immediately. Once the open duration passed a single probe call is let through, closing
+ * the breaker if it succeeds and opening it again if it fails.
+ */
+public class CircuitBreaker {
+
+    private final SearchEngine engine;
+    private final int failureThreshold;
+    private final double errorRate;
+    private final long openDuration;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicIntegerArray window;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public CircuitBreaker(SearchEngine engine, int failureThreshold, double errorRate, int windowSize, long openDuration) {
+        this.engine = engine;
+        this.failureThreshold = failureThreshold;
+        this.errorRate = errorRate;
+        this.openDuration = openDuration;
+        this.window = new AtomicIntegerArray(Math.max(1, windowSize));
+    }
+
+    /**
+     * Creates the breaker for an engine from the options under engines.&lt;id&gt;.options.circuit-breaker
+     * @param engine The engine
+     * @return The {@link CircuitBreaker}
+     */
+    public static CircuitBreaker of(SearchEngine engine) {
+        final EngineConfig config = Enquiry.instance.storage.getConfig().getEngine(engine.getId());
+        return new CircuitBreaker(engine, config.getBreakerFailureThreshold(), config.getBreakerErrorRate(), config.getBreakerWindow(),
+                config.getBreakerOpenDuration());
+    }
+
+    /**
+     * Performs the call if the breaker allows it and records its outcome.
+     * <p>
+     * Calls rejected before reaching upstream, because Enquiry or the engine is busy or rate limited, say nothing about the health of
+     * the engine and are not recorded.
+     * @param call The call
+     * @param <T> The type of the result
+     * @return The future result, completed exceptionally with a {@link CircuitOpenException} if the breaker is open
+     */
+    public <T> CompletableFuture<T> guard(Supplier<CompletableFuture<T>> call) {
+        final Permit permit = this.tryAcquire();
+        if (permit == Permit.REJECTED) {
+            this.rejected.incrementAndGet();
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new CircuitOpenException(this.engine));
+            return future;
+        }
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        return future.whenComplete((result, throwable) -> {
+            if (throwable != null && isRejection(SearchTask.unwrap(throwable))) {
+                if (permit == Permit.PROBE) {
+                    // The probe never reached upstream, let the next call probe instead
+                    this.probing.set(false);
+                    this.transition(State.HALF_OPEN, State.OPEN);
+                }
+            } else if (permit == Permit.PROBE) {
+                this.onProbe(throwable == null);
+            } else if (throwable == null) {
+                this.onSuccess();
+            } else {
+                this.onFailure();
+            }
+        });
+    }
+
+    private Permit tryAcquire() {
+        switch (this.state.get()) {
+            case CLOSED:
+                return Permit.CALL;
+            case OPEN:
+                if (System.currentTimeMillis() - this.openedAt.get() >= this.openDuration && this.probing.compareAndSet(false, true)) {
+                    if (this.transition(State.OPEN, State.HALF_OPEN)) {
+                        return Permit.PROBE;
+                    }
+                    this.probing.set(false);
+                }
+                return Permit.REJECTED;
+            default:
+                // Only the probe call is let through while half open
+                return Permit.REJECTED;
+        }
+    }
+
+    private static boolean isRejection(Throwable throwable) {
+        return throwable instanceof RejectedExecutionException || throwable instanceof SearchBusyException
+                || throwable instanceof RateLimitedException;
+    }
+
+    private void onProbe(boolean success) {
+        if (success) {
+            this.reset();
+            this.transition(State.HALF_OPEN, State.CLOSED);
+        } else {
+            this.open(State.HALF_OPEN);
+        }
+        this.probing.set(false);
+    }
+
+    private void onSuccess() {
+        // Calls that started before the breaker opened say nothing about the probe
+        if (this.state.get() != State.CLOSED) {
+            return;
+        }
+        this.consecutiveFailures.set(0);
+        this.record(0);
+    }
+
+    private void onFailure() {
+        if (this.state.get() != State.CLOSED) {
+            return;
+        }
+        final int failures = this.consecutiveFailures.incrementAndGet();
+        this.record(1);
+        if (failures >= this.failureThreshold || this.getErrorRate() >= this.errorRate) {
+            this.open(State.CLOSED);
+        }
+    }
+
+    private synchronized void open(State from) {
+        // Only the transition sets the time opened, late failures must not extend the open duration
+        if (this.state.get() != from) {
+            return;
+        }
+        this.openedAt.set(System.currentTimeMillis());
+        if (this.transition(from, State.OPEN)) {
+            this.opened.incrementAndGet();
+            this.reset();
+        }
+    }
+
+    private boolean transition(State from, State to) {
+        if (this.state.compareAndSet(from, to)) {
+            Enquiry.instance.logger.info("Circuit breaker of " + this.engine.getPlainName() + " transitioned from " + from + " to "
+                    + to);
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        this.consecutiveFailures.set(0);
+        for (int i = 0; i < this.window.length(); i++) {
+            this.window.set(i, 0);
+        }
+    }
+
+    private void record(int failure) {
+        final int index = (this.next.getAndIncrement() & Integer.MAX_VALUE) % this.window.length();
+        // 1 marks a success and 2 a failure so unused slots are not counted
+        this.window.set(index, failure + 1);
+    }
+
+    /**
+     * Gets the error rate of the most recent calls.
+     * <p>
+     * The rate is 0 until the window is full so a single early failure does not open the breaker.
+     * @return The error rate, between 0 and 1
+     */
+    public double getErrorRate() {
+        int calls = 0, failures = 0;
+        for (int i = 0; i < this.window.length(); i++) {
+            final int outcome = this.window.get(i);
+            if (outcome != 0) {
+                calls++;
+                if (outcome == 2) {
+                    failures++;
+                }
+            }
+        }
+        return calls < this.window.length() ? 0 : (double) failures / calls;
+    }
+
+    /**
+     * Gets the state of the breaker.
+     * @return The state
+     */
+    public State getState() {
+        return this.state.get();
+    }
+
+    /**
+     * Gets the amount of times the breaker opened.
+     * @return The opened count
+     */
+    public long getOpenedCount() {
+        return this.opened.get();
+    }
+
+    /**
+     * Gets the amount of calls that failed fast while the breaker was open.
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    private enum Permit {
+        REJECTED,
+        CALL,
+        PROBE
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the connections to the endpoints of engines warm.
+ * <p>
+ * Once the server started every configured engine's endpoint is resolved and connected to, so the first search does not pay for the
+ * lookup of the host and the handshake. After that an engine is pinged every interval for as long as it has been searched with recently,
+ * so its pooled connection is not closed for being idle. Engines nobody searches with are left alone.
+ * <p>
+ * The JVM closes a pooled connection after it has been idle for 5 seconds unless the server asks for longer, so the interval has to stay
+ * below that for a ping to find the connection still open. A connection kept open this way also spares the search the lookup of the host
+ * once the JVM's 30 second cache of it expired.
+ */
+public class ConnectionWarmer implements Runnable {
+
+    // Pings block on the network, keep them off the search threads and the timer hedges and deadlines rely on
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(
+            "Enquiry Warmup").setDaemon(true).build());
+    private final Map<SearchEngine, Long> searches = Maps.newHashMap();
+    private final Map<SearchEngine, Long> active = Maps.newHashMap();
+
+    /**
+     * Creates a warmer and warms the connections of the configured engines.
+     * @return The {@link ConnectionWarmer}
+     */
+    public static ConnectionWarmer start() {
+        final ConnectionWarmer warmer = new ConnectionWarmer();
+        warmer.timer.execute(warmer);
+        return warmer;
+    }
+
+    @Override
+    public void run() {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        try {
+            if (config.isWarmupEnabled()) {
+                final long now = System.currentTimeMillis();
+                for (SearchEngine engine : Enquiry.instance.getEngines()) {
+                    if (!config.getWarmupEngines().contains(engine.getId())) {
+                        continue;
+                    }
+                    final SearchMetrics metrics = engine.getMetrics();
+                    final long count = metrics.getSuccessCount() + metrics.getFailureCount();
+                    final Long previous = this.searches.put(engine, count);
+                    if (previous == null || previous != count) {
+                        this.active.put(engine, now);
+                    }
+                    if (now - this.active.get(engine) <= config.getWarmupIdle()) {
+                        this.warm(engine);
+                    }
+                }
+            }
+        } finally {
+            // Scheduled one run at a time so a reloaded interval applies from the next ping
+            try {
+                this.timer.schedule(this, config.getWarmupInterval(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // Stopped
+            }
+        }
+    }
+
+    /**
+     * Stops pinging the engines.
+     */
+    public void stop() {
+        this.timer.shutdownNow();
+    }
+
+    private void warm(SearchEngine engine) {
+        try {
+            Enquiry.instance.transport.warm(engine.getSearchUrl());
+        } catch (IOException | RuntimeException e) {
+            Enquiry.instance.logger.debug("Could not warm the connection to " + engine.getSearchUrl(), e);
+        }
+    }
+}
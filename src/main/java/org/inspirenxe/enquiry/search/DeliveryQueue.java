@@ -0,0 +1,198 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.service.scheduler.Task;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers messages of searches on the server thread.
+ * <p>
+ * Search threads queue the messages of a search as one delivery, the lines of a delivery are joined into a single message. The queue is
+ * drained every tick until either the amount of deliveries or the time spent reaches the budget, whatever is left waits for the next tick.
+ * Deliveries to players that disconnected in the meantime are dropped.
+ */
+public class DeliveryQueue {
+
+    private static final Text NEW_LINE = Texts.of("\n");
+
+    private final Queue<Delivery> queue = new ConcurrentLinkedQueue<>();
+    private volatile int maxPerTick;
+    private volatile long tickBudget;
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private Task task;
+
+    /**
+     * Creates a queue.
+     * @param maxPerTick The maximum amount of deliveries per tick
+     * @param tickBudget The maximum time spent delivering per tick in microseconds
+     */
+    public DeliveryQueue(int maxPerTick, long tickBudget) {
+        this.maxPerTick = Math.max(1, maxPerTick);
+        this.tickBudget = TimeUnit.MICROSECONDS.toNanos(tickBudget);
+    }
+
+    /**
+     * Creates the queue from the options under options.delivery and starts draining it.
+     * @return The {@link DeliveryQueue}
+     */
+    public static DeliveryQueue create() {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        final DeliveryQueue queue = new DeliveryQueue(config.getDeliveryMaxPerTick(), config.getDeliveryTickBudget());
+        queue.task = Enquiry.instance.game.getScheduler().createTaskBuilder()
+                .name("Enquiry Delivery")
+                .interval(1)
+                .execute(queue::drain)
+                .submit(Enquiry.instance);
+        return queue;
+    }
+
+    /**
+     * Applies the budgets of a reloaded configuration, taking effect from the next tick.
+     * @param config The configuration
+     */
+    public void configure(EnquiryConfig config) {
+        this.maxPerTick = Math.max(1, config.getDeliveryMaxPerTick());
+        this.tickBudget = TimeUnit.MICROSECONDS.toNanos(config.getDeliveryTickBudget());
+    }
+
+    /**
+     * Queues messages to be sent to the target as one message.
+     * @param target The target
+     * @param messages The messages
+     */
+    public void deliver(CommandSource target, Text... messages) {
+        this.deliver(target, Arrays.asList(messages));
+    }
+
+    /**
+     * Queues messages to be sent to the target as one message.
+     * @param target The target
+     * @param messages The messages
+     */
+    public void deliver(CommandSource target, List<Text> messages) {
+        this.deliver(target, messages, null, 0);
+    }
+
+    /**
+     * Queues messages of a search to be sent to the target as one message, recording the time until they are sent.
+     * @param target The target
+     * @param messages The messages
+     * @param metrics The metrics of the engine searched with or null to not record
+     * @param started The time the search started at, from {@link System#nanoTime()}
+     */
+    public void deliver(CommandSource target, List<Text> messages, SearchMetrics metrics, long started) {
+        if (!messages.isEmpty()) {
+            this.queue.add(new Delivery(target, messages, metrics, started));
+        }
+    }
+
+    /**
+     * Sends queued deliveries until the budget of the tick is spent.
+     */
+    public void drain() {
+        final long start = System.nanoTime();
+        for (int i = 0; i < this.maxPerTick && System.nanoTime() - start < this.tickBudget; i++) {
+            final Delivery delivery = this.queue.poll();
+            if (delivery == null) {
+                return;
+            }
+            if (delivery.target instanceof Player && !((Player) delivery.target).isOnline()) {
+                this.dropped.incrementAndGet();
+                continue;
+            }
+            delivery.target.sendMessage(delivery.messages.size() == 1 ? delivery.messages.get(0) : Texts.join(NEW_LINE, delivery.messages));
+            this.delivered.incrementAndGet();
+            if (delivery.metrics != null) {
+                delivery.metrics.recordSince(SearchMetrics.Stage.DELIVER, delivery.queued);
+                delivery.metrics.recordSince(SearchMetrics.Stage.TOTAL, delivery.started);
+            }
+        }
+    }
+
+    /**
+     * Stops draining the queue, deliveries still queued are discarded.
+     */
+    public void shutdown() {
+        if (this.task != null) {
+            this.task.cancel();
+        }
+        this.queue.clear();
+    }
+
+    /**
+     * Gets the amount of deliveries waiting for a tick.
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * Gets the amount of deliveries sent.
+     * @return The delivered count
+     */
+    public long getDeliveredCount() {
+        return this.delivered.get();
+    }
+
+    /**
+     * Gets the amount of deliveries dropped because the player disconnected.
+     * @return The dropped count
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    private static class Delivery {
+
+        private final CommandSource target;
+        private final List<Text> messages;
+        private final SearchMetrics metrics;
+        private final long started;
+        private final long queued = System.nanoTime();
+
+        Delivery(CommandSource target, List<Text> messages, SearchMetrics metrics, long started) {
+            this.target = target;
+            this.messages = messages;
+            this.metrics = metrics;
+            this.started = started;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import org.inspirenxe.enquiry.EngineConfig;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedges the upstream calls of an engine with a fallback engine.
+ * <p>
+ * When the engine has not answered within the configured percentile of its recent latency, or has failed, the search is sent to the
+ * fallback engine as well and whichever answers successfully first serves the search. While the search threads are saturated a slow
+ * engine is not hedged, as the backup call would only add to the load, but a failed one still fails over.
+ */
+public class HedgePolicy {
+
+    private final String fallback;
+    private final double percentile;
+    private final long minDelay;
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong won = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public HedgePolicy(String fallback, double percentile, long minDelay) {
+        this.fallback = fallback;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+    }
+
+    /**
+     * Creates the policy for an engine from the options under engines.&lt;id&gt;.options.hedge
+     * @param engineId The id of the engine
+     * @return The {@link HedgePolicy}
+     */
+    public static HedgePolicy of(String engineId) {
+        final EngineConfig config = Enquiry.instance.storage.getConfig().getEngine(engineId);
+        return new HedgePolicy(config.getHedgeFallback(), config.getHedgePercentile(), config.getHedgeMinDelay());
+    }
+
+    /**
+     * Gets the fallback engine if one is configured and registered.
+     * @param engine The engine being hedged
+     * @return The fallback engine or null
+     */
+    public SearchEngine getFallback(SearchEngine engine) {
+        if (this.fallback.isEmpty() || this.fallback.equalsIgnoreCase(engine.getId())) {
+            return null;
+        }
+        for (SearchEngine candidate : Enquiry.instance.getEngines()) {
+            if (candidate.getId().equalsIgnoreCase(this.fallback)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hedges the primary call with the backup call.
+     * @param primary The primary call, already in flight
+     * @param latency The recent latency of the primary engine
+     * @param backup The backup call
+     * @return The future response of whichever call succeeded first
+     */
+    public CompletableFuture<SearchResponse> hedge(CompletableFuture<SearchResponse> primary, LatencyTracker latency,
+            Supplier<CompletableFuture<SearchResponse>> backup) {
+        final HedgedSearch search = new HedgedSearch(backup);
+        final long delay = Math.max(this.minDelay, latency.percentile(this.percentile));
+        ScheduledFuture<?> timer;
+        try {
+            timer = Enquiry.instance.executor.schedule(search::startBackup, delay, TimeUnit.MILLISECONDS, this.rejected::incrementAndGet);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the primary call is still failed over
+            this.rejected.incrementAndGet();
+            timer = null;
+        }
+        primary.whenComplete((response, throwable) -> search.onPrimary(response, throwable));
+        if (timer != null) {
+            final ScheduledFuture<?> scheduled = timer;
+            search.result.whenComplete((response, throwable) -> scheduled.cancel(false));
+        }
+        return search.result;
+    }
+
+    /**
+     * Gets the amount of searches a backup call was sent for.
+     * @return The hedged count
+     */
+    public long getHedgedCount() {
+        return this.hedged.get();
+    }
+
+    /**
+     * Gets the amount of searches whose backup call could not be scheduled because the search threads were saturated.
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Gets the amount of searches that were served by the backup call.
+     * @return The won count
+     */
+    public long getWonCount() {
+        return this.won.get();
+    }
+
+    private class HedgedSearch {
+
+        private final CompletableFuture<SearchResponse> result = new CompletableFuture<>();
+        private final Supplier<CompletableFuture<SearchResponse>> backup;
+        private boolean backupStarted, primaryFailed, backupFailed;
+
+        private HedgedSearch(Supplier<CompletableFuture<SearchResponse>> backup) {
+            this.backup = backup;
+        }
+
+        private void startBackup() {
+            synchronized (this) {
+                if (this.backupStarted || this.result.isDone()) {
+                    return;
+                }
+                this.backupStarted = true;
+            }
+            HedgePolicy.this.hedged.incrementAndGet();
+            CompletableFuture<SearchResponse> future;
+            try {
+                future = this.backup.get();
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete(this::onBackup);
+        }
+
+        private void onPrimary(SearchResponse response, Throwable throwable) {
+            if (throwable == null) {
+                this.result.complete(response);
+                return;
+            }
+            final boolean failover;
+            synchronized (this) {
+                this.primaryFailed = true;
+                failover = !this.backupStarted;
+                if (this.backupFailed) {
+                    this.result.completeExceptionally(throwable);
+                }
+            }
+            if (failover) {
+                this.startBackup();
+            }
+        }
+
+        private void onBackup(SearchResponse response, Throwable throwable) {
+            if (throwable == null) {
+                if (this.result.complete(response)) {
+                    HedgePolicy.this.won.incrementAndGet();
+                }
+                return;
+            }
+            synchronized (this) {
+                this.backupFailed = true;
+                if (this.primaryFailed) {
+                    this.result.completeExceptionally(throwable);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the latency of the most recent upstream calls of an engine.
+ */
+public class LatencyTracker {
+
+    private final AtomicLongArray samples;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public LatencyTracker(int size) {
+        this.samples = new AtomicLongArray(size);
+    }
+
+    /**
+     * Records the latency of a call.
+     * @param millis The latency in milliseconds
+     */
+    public void record(long millis) {
+        final int index = (this.next.getAndIncrement() & Integer.MAX_VALUE) % this.samples.length();
+        // Store one more so a call answered within the same millisecond is not mistaken for an empty slot
+        this.samples.set(index, millis + 1);
+    }
+
+    /**
+     * Gets the latency below which the percentage of recent calls completed.
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency in milliseconds or -1 if no call was recorded yet
+     */
+    public long percentile(double percentile) {
+        final long[] sorted = new long[this.samples.length()];
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            final long sample = this.samples.get(i);
+            if (sample > 0) {
+                sorted[count++] = sample - 1;
+            }
+        }
+        if (count == 0) {
+            return -1;
+        }
+        Arrays.sort(sorted, 0, count);
+        final int index = (int) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
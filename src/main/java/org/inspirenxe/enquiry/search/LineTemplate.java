@@ -0,0 +1,232 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.util.TextMessageException;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A line format compiled into its literal parts and placeholders.
+ * <p>
+ * Formats are compiled once when the configuration is loaded, rendering a line appends the parts into a builder reused by the thread and
+ * parses the legacy formatting codes of the whole line once. Supported placeholders are ${resultNumber}, ${resultTitle}, ${resultUrl},
+ * ${resultDescription}, ${engine} and ${query}, anything else is kept as written.
+ * <p>
+ * Formatting codes are only read from the format and the name of the engine. Their codes are written with the section sign when compiled,
+ * the line is parsed with it and section signs are left out of the query and results, so an &amp; typed by a player or found on a web
+ * page is shown as written rather than styling or obfuscating the line.
+ */
+public final class LineTemplate {
+
+    private static final Pattern NOT_PRINTABLE_PATTERN = Pattern.compile("[^\\x20-\\x7e]");
+    private static final char CODE = '\u00a7';
+    private static final String FORMATS = "0123456789abcdefklmnorABCDEFKLMNOR";
+
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(128);
+        }
+    };
+
+    private final String format;
+    private final String[] literals;
+    private final Placeholder[] placeholders;
+
+    private LineTemplate(String format, String[] literals, Placeholder[] placeholders) {
+        this.format = format;
+        this.literals = literals;
+        this.placeholders = placeholders;
+    }
+
+    /**
+     * Compiles a line format.
+     * @param format The line format
+     * @return The {@link LineTemplate}
+     */
+    public static LineTemplate compile(String format) {
+        final List<String> literals = new ArrayList<>();
+        final List<Placeholder> placeholders = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int index = 0;
+        while (index < format.length()) {
+            final int start = format.indexOf("${", index);
+            final int end = start < 0 ? -1 : format.indexOf('}', start);
+            if (end < 0) {
+                break;
+            }
+            final Placeholder placeholder = Placeholder.of(format.substring(start + 2, end));
+            if (placeholder == null) {
+                literal.append(format, index, end + 1);
+            } else {
+                literal.append(format, index, start);
+                literals.add(codes(literal));
+                placeholders.add(placeholder);
+                literal.setLength(0);
+            }
+            index = end + 1;
+        }
+        literal.append(format, index, format.length());
+        literals.add(codes(literal));
+        return new LineTemplate(format, literals.toArray(new String[literals.size()]),
+                placeholders.toArray(new Placeholder[placeholders.size()]));
+    }
+
+    /**
+     * Renders a result line.
+     * @param engine The name of the engine in legacy formatting codes
+     * @param query The query
+     * @param number The number of the result
+     * @param result The result
+     * @return The line
+     * @throws MalformedURLException Thrown when the url of the result is not valid
+     * @throws TextMessageException Thrown when the line is not valid legacy text
+     */
+    public Text render(String engine, String query, int number, SearchResult result) throws MalformedURLException, TextMessageException {
+        return Texts.legacy(CODE).from(this.format(engine, query, number, result)).builder()
+                .onClick(TextActions.openUrl(new URL(result.getUrl())))
+                .onHover(result.getDescription() != null && !result.getDescription().isEmpty() ?
+                        TextActions.showText(Texts.of(NOT_PRINTABLE_PATTERN.matcher(result.getDescription()).replaceAll(""))) :
+                        null)
+                .build();
+    }
+
+    /**
+     * Formats a result line with its placeholders replaced, before legacy formatting codes are parsed. The codes of the format and the
+     * engine are written with the section sign.
+     * @param engine The name of the engine in legacy formatting codes
+     * @param query The query
+     * @param number The number of the result
+     * @param result The result
+     * @return The line
+     */
+    public String format(String engine, String query, int number, SearchResult result) {
+        final StringBuilder line = BUILDER.get();
+        line.setLength(0);
+        line.append(this.literals[0]);
+        for (int i = 0; i < this.placeholders.length; i++) {
+            switch (this.placeholders[i]) {
+                case RESULT_NUMBER:
+                    line.append(number);
+                    break;
+                case RESULT_TITLE:
+                    if (result.getTitle() != null) {
+                        appendText(line, result.getTitle());
+                    } else if (result.getUrl() != null) {
+                        // Results without a title are shown by their URL
+                        appendText(line, result.getUrl());
+                    }
+                    break;
+                case RESULT_URL:
+                    if (result.getUrl() != null) {
+                        appendText(line, result.getUrl());
+                    }
+                    break;
+                case RESULT_DESCRIPTION:
+                    if (result.getDescription() != null) {
+                        appendText(line, result.getDescription());
+                    }
+                    break;
+                case ENGINE:
+                    appendCodes(line, engine);
+                    break;
+                case QUERY:
+                    appendText(line, query);
+                    break;
+            }
+            line.append(this.literals[i + 1]);
+        }
+        return line.toString().trim();
+    }
+
+    /**
+     * Gets the line format the template was compiled from.
+     * @return The line format
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    private static String codes(CharSequence legacy) {
+        final StringBuilder codes = new StringBuilder(legacy.length());
+        appendCodes(codes, legacy);
+        return codes.toString();
+    }
+
+    /**
+     * Appends legacy text with the formatting codes written with the section sign, an &amp; not followed by a code is kept.
+     */
+    private static void appendCodes(StringBuilder line, CharSequence legacy) {
+        for (int i = 0; i < legacy.length(); i++) {
+            final char c = legacy.charAt(i);
+            line.append(c == '&' && i + 1 < legacy.length() && FORMATS.indexOf(legacy.charAt(i + 1)) >= 0 ? CODE : c);
+        }
+    }
+
+    /**
+     * Appends text that must not be formatted, it can not start a code without a section sign.
+     */
+    private static void appendText(StringBuilder line, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c != CODE) {
+                line.append(c);
+            }
+        }
+    }
+
+    private enum Placeholder {
+        RESULT_NUMBER("resultNumber"),
+        RESULT_TITLE("resultTitle"),
+        RESULT_URL("resultUrl"),
+        RESULT_DESCRIPTION("resultDescription"),
+        ENGINE("engine"),
+        QUERY("query");
+
+        private final String name;
+
+        Placeholder(String name) {
+            this.name = name;
+        }
+
+        static Placeholder of(String name) {
+            for (Placeholder placeholder : values()) {
+                if (placeholder.name.equals(name)) {
+                    return placeholder;
+                }
+            }
+            return null;
+        }
+    }
+}
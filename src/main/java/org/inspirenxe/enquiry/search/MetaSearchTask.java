@@ -0,0 +1,259 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+import org.inspirenxe.enquiry.api.event.SearchPreEvent;
+import org.inspirenxe.enquiry.api.event.SearchSuccessEvent;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.TextMessageException;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.net.MalformedURLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches every registered engine in parallel and sends the fused results to the target.
+ * <p>
+ * Engines that have not answered when the deadline passes are left out of the reply. Their searches are not cancelled, so late
+ * results still end up in the engine's cache.
+ * <p>
+ * Every engine searched fires the same events and records the same metrics as a {@link SearchTask}, late results included. Results
+ * of a cancelled {@link SearchSuccessEvent} are left out of the reply.
+ */
+public class MetaSearchTask implements Runnable {
+
+    /**
+     * The rank constant of reciprocal rank fusion, dampens the weight of the top ranks of a single engine.
+     */
+    private static final int RANK_CONSTANT = 60;
+    private static final Pattern URL_PATTERN = Pattern.compile("^([a-z][a-z0-9+.-]*://)?(?:www\\.)?([^/?]*)(.*)$", Pattern.CASE_INSENSITIVE
+            | Pattern.DOTALL);
+
+    private final CommandSource src;
+    private final CommandSource target;
+    private final Collection<SearchEngine> engines;
+    private final String query;
+    private final AtomicBoolean replied = new AtomicBoolean();
+    private final long created = System.nanoTime();
+
+    public MetaSearchTask(CommandSource src, CommandSource target, Collection<SearchEngine> engines, String query) {
+        this.src = src;
+        this.target = target;
+        this.engines = engines;
+        this.query = query;
+    }
+
+    @Override
+    public void run() {
+        if (!Enquiry.instance.playerRateLimiter.tryAcquire(src)) {
+            for (SearchEngine engine : engines) {
+                engine.getMetrics().failure(SearchFailureEvent.Reason.RATE_LIMITED);
+                Enquiry.instance.game.getEventManager().post(new SearchFailureEvent(target, engine, query, SearchFailureEvent.Reason.RATE_LIMITED));
+            }
+            Enquiry.instance.delivery.deliver(src, Texts.of(TextColors.RED, "You are searching too quickly, please try again later."));
+            return;
+        }
+        final Map<SearchEngine, CompletableFuture<List<? extends SearchResult>>> searches = Maps.newLinkedHashMap();
+        for (SearchEngine engine : engines) {
+            engine.getMetrics().recordSince(SearchMetrics.Stage.QUEUE_WAIT, created);
+            final long start = System.nanoTime();
+            final SearchPreEvent preEvent = new SearchPreEvent(target, engine, query);
+            final boolean cancelled = Enquiry.instance.game.getEventManager().post(preEvent);
+            engine.getMetrics().recordSince(SearchMetrics.Stage.PRE_EVENT, start);
+            if (cancelled) {
+                engine.getMetrics().cancelled();
+                continue;
+            }
+            final SearchEngine searched = preEvent.engine;
+            if (searches.containsKey(searched)) {
+                // Redirected to an engine that is already searched, searching it again would fire its events twice
+                continue;
+            }
+            searches.put(searched, searched.lookup(query).handle((response, throwable) ->
+                    throwable == null ? onSuccess(searched, response) : onFailure(searched, SearchTask.unwrap(throwable))));
+        }
+        if (searches.isEmpty()) {
+            if (src instanceof Player) {
+                Enquiry.instance.delivery.deliver(src, Texts.of("None of the engines searched for ", TextColors.YELLOW, query));
+            }
+            return;
+        }
+        final long deadline = Enquiry.instance.storage.getConfig().getMetaDeadline();
+        Enquiry.instance.executor.deadline(() -> reply(searches), deadline, TimeUnit.MILLISECONDS);
+        CompletableFuture.allOf(searches.values().toArray(new CompletableFuture<?>[searches.size()])).whenComplete((ignored, throwable) ->
+                reply(searches));
+    }
+
+    /**
+     * Fires the success event of an engine.
+     * @param engine The engine searched with
+     * @param response The response
+     * @return The results after the event or null if it was cancelled
+     */
+    private List<? extends SearchResult> onSuccess(SearchEngine engine, SearchResponse response) {
+        final SearchSuccessEvent event = new SearchSuccessEvent(target, engine, query, response.getResults(), response.getEngine());
+        if (Enquiry.instance.game.getEventManager().post(event)) {
+            engine.getMetrics().cancelled();
+            return null;
+        }
+        engine.getMetrics().success(event.results.size());
+        return event.results;
+    }
+
+    /**
+     * Fires the failure event of an engine, the player is only told when no engine answered.
+     * @param engine The engine searched with
+     * @param throwable The cause of the failure
+     * @return Null as there are no results
+     */
+    private List<? extends SearchResult> onFailure(SearchEngine engine, Throwable throwable) {
+        final SearchFailureEvent.Reason reason = SearchTask.reasonOf(throwable);
+        engine.getMetrics().failure(reason);
+        Enquiry.instance.game.getEventManager().post(new SearchFailureEvent(target, engine, query, reason));
+        if (reason == SearchFailureEvent.Reason.ERROR) {
+            Enquiry.instance.logger.debug("An error occurred while attempting to search " + engine.getPlainName() + " for "
+                    + query, throwable);
+        }
+        return null;
+    }
+
+    private void reply(Map<SearchEngine, CompletableFuture<List<? extends SearchResult>>> searches) {
+        if (!this.replied.compareAndSet(false, true)) {
+            return;
+        }
+        final List<SearchEngine> answered = Lists.newArrayList();
+        final List<List<? extends SearchResult>> rankings = Lists.newArrayList();
+        for (Map.Entry<SearchEngine, CompletableFuture<List<? extends SearchResult>>> entry : searches.entrySet()) {
+            final CompletableFuture<List<? extends SearchResult>> search = entry.getValue();
+            if (search.isDone() && !search.isCompletedExceptionally() && search.join() != null) {
+                answered.add(entry.getKey());
+                rankings.add(search.join());
+            }
+        }
+        if (answered.isEmpty()) {
+            if (src instanceof Player) {
+                Enquiry.instance.delivery.deliver(src, Texts.of("None of the engines answered in time for ", TextColors.YELLOW,
+                        query));
+            }
+            return;
+        }
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        final List<SearchResult> results = fuse(rankings, config.getMetaMaxResults());
+        if (!results.isEmpty()) {
+            Enquiry.instance.completer.record(query);
+        }
+        final List<Text> names = Lists.newArrayList();
+        for (SearchEngine engine : answered) {
+            names.add(engine.getName());
+        }
+        final List<Text> messages = Lists.newArrayListWithCapacity(results.size() + 1);
+        messages.add(Texts.of(
+                "(", Texts.builder("All").onHover(TextActions.showText(Texts.join(Texts.of(", "), names))).build(),
+                TextColors.RESET, ") Result(s) for: ", TextColors.YELLOW, query));
+        final LineTemplate template = config.getMetaLineTemplate();
+        int i = 1;
+        for (SearchResult result : results) {
+            try {
+                messages.add(template.render("All", query, i++, result));
+            } catch (MalformedURLException | TextMessageException e) {
+                Enquiry.instance.logger.debug("Skipping result " + result.getUrl() + " for " + query, e);
+            }
+        }
+        Enquiry.instance.delivery.deliver(target, messages);
+    }
+
+    /**
+     * Fuses rankings with reciprocal rank fusion, results with the same url are merged. Results that score the same keep the order they
+     * were first seen in.
+     * @param rankings The rankings, best result first
+     * @param limit The maximum amount of results
+     * @return The fused ranking
+     */
+    public static List<SearchResult> fuse(List<List<? extends SearchResult>> rankings, int limit) {
+        final Map<String, SearchResult> results = Maps.newLinkedHashMap();
+        final Map<String, Double> scores = Maps.newLinkedHashMap();
+        for (List<? extends SearchResult> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                final SearchResult result = ranking.get(rank);
+                final String key = canonicalUrl(result.getUrl());
+                results.putIfAbsent(key, result);
+                scores.merge(key, 1.0 / (RANK_CONSTANT + rank + 1), Double::sum);
+            }
+        }
+        final List<String> keys = Lists.newArrayList(scores.keySet());
+        // The sort is stable, ties keep their insertion order
+        keys.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        final List<SearchResult> fused = Lists.newArrayListWithCapacity(Math.min(limit, keys.size()));
+        for (int i = 0; i < keys.size() && i < limit; i++) {
+            fused.add(results.get(keys.get(i)));
+        }
+        return fused;
+    }
+
+    /**
+     * Gets the url that identifies a result across engines. The scheme, www. and host are compared case insensitively, the path and
+     * query are not as servers may tell them apart by case.
+     * @param url The url
+     * @return The canonical url
+     */
+    static String canonicalUrl(String url) {
+        String canonical = url.trim();
+        final int fragment = canonical.indexOf('#');
+        if (fragment >= 0) {
+            canonical = canonical.substring(0, fragment);
+        }
+        final Matcher matcher = URL_PATTERN.matcher(canonical);
+        if (!matcher.matches()) {
+            return canonical;
+        }
+        final String scheme = matcher.group(1) == null ? "" : matcher.group(1).toLowerCase(Locale.ENGLISH);
+        String path = matcher.group(3);
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return (scheme.equals("http://") || scheme.equals("https://") ? "" : scheme) + matcher.group(2).toLowerCase(Locale.ENGLISH) + path;
+    }
+}
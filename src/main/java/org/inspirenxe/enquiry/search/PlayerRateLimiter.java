@@ -0,0 +1,89 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate at which each player can search.
+ * <p>
+ * Buckets of players that have not searched for a while are discarded, other command sources are not limited.
+ */
+public class PlayerRateLimiter {
+
+    private final LoadingCache<UUID, TokenBucket> buckets;
+    private final AtomicLong limited = new AtomicLong();
+
+    public PlayerRateLimiter(double perSecond, int burst) {
+        this.buckets = CacheBuilder.newBuilder()
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build(new CacheLoader<UUID, TokenBucket>() {
+                    @Override
+                    public TokenBucket load(UUID key) {
+                        return new TokenBucket(perSecond, burst);
+                    }
+                });
+    }
+
+    /**
+     * Creates the limiter from the options under options.rate-limit.player
+     * @return The {@link PlayerRateLimiter}
+     */
+    public static PlayerRateLimiter create() {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        return new PlayerRateLimiter(config.getPlayerRateLimitPerSecond(), config.getPlayerRateLimitBurst());
+    }
+
+    /**
+     * Takes a token from the bucket of the source.
+     * @param source The source searching
+     * @return True if the source may search, false if it is searching too quickly
+     */
+    public boolean tryAcquire(CommandSource source) {
+        if (!(source instanceof Player) || this.buckets.getUnchecked(((Player) source).getUniqueId()).tryAcquire()) {
+            return true;
+        }
+        this.limited.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Gets the amount of searches rejected because the player searched too quickly.
+     * @return The limited count
+     */
+    public long getLimitedCount() {
+        return this.limited.get();
+    }
+}
@@ -0,0 +1,380 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.collect.Lists;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.cache.ResultCache;
+import org.spongepowered.api.service.scheduler.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completes queries from the queries searched before, most searched first.
+ * <p>
+ * Queries are kept normalized in a prefix trie in which every node knows the highest count below it, so the most searched completions of
+ * a prefix are found without visiting the rest of its subtree. The trie is bounded, once it holds more than the maximum amount of queries
+ * the least searched queries are dropped and the counts of the others are halved. Queries are saved periodically and loaded on start.
+ */
+public class QueryCompleter {
+
+    private static final int MAGIC = 0x456E5143;
+    private static final int MAX_LENGTH = 100;
+
+    private final File file;
+    private final int maxEntries;
+    private Node root = new Node();
+    private int size;
+    private boolean dirty;
+    // Queries recorded while a pruned trie is built, null when not pruning
+    private List<Map.Entry<String, Integer>> recorded;
+    private Task task;
+
+    public QueryCompleter(File file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Creates the completer from the options under options.completion, loads the saved queries and starts saving them periodically.
+     * @param file The file the queries are saved to
+     * @return The {@link QueryCompleter}
+     */
+    public static QueryCompleter create(File file) {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        final QueryCompleter completer = new QueryCompleter(file, config.getCompletionMaxEntries());
+        try {
+            completer.load();
+        } catch (IOException e) {
+            Enquiry.instance.logger.warn("Could not load the queries of " + file + ", starting without completions.", e);
+        }
+        completer.task = Enquiry.instance.game.getScheduler().createTaskBuilder()
+                .name("Enquiry Completion")
+                .async()
+                .interval(config.getCompletionSaveInterval(), TimeUnit.SECONDS)
+                .execute(completer::trySave)
+                .submit(Enquiry.instance);
+        return completer;
+    }
+
+    /**
+     * Records a query that was searched.
+     * @param query The query
+     */
+    public void record(String query) {
+        final String normalized = ResultCache.normalize(query);
+        if (normalized.isEmpty() || normalized.length() > MAX_LENGTH) {
+            return;
+        }
+        final List<Map.Entry<String, Integer>> entries;
+        synchronized (this) {
+            if (insert(this.root, normalized, 1)) {
+                this.size++;
+            }
+            this.dirty = true;
+            if (this.recorded != null) {
+                this.recorded.add(new AbstractMap.SimpleImmutableEntry<>(normalized, 1));
+                return;
+            }
+            entries = this.startPruning();
+        }
+        if (entries != null) {
+            this.prune(entries);
+        }
+    }
+
+    /**
+     * Gets the most searched queries starting with the prefix.
+     * @param prefix The prefix
+     * @param limit The maximum amount of queries
+     * @return The queries, most searched first
+     */
+    public List<String> complete(String prefix, int limit) {
+        final String normalized = prefix.replaceAll("\\s+", " ").replaceFirst("^ ", "").toLowerCase(Locale.ENGLISH);
+        final List<String> completions = Lists.newArrayListWithCapacity(limit);
+        synchronized (this) {
+            Node node = this.root;
+            for (int i = 0; i < normalized.length() && node != null; i++) {
+                node = node.child(normalized.charAt(i), false);
+            }
+            if (node == null || node.best == 0) {
+                return Collections.emptyList();
+            }
+            final PriorityQueue<Candidate> queue = new PriorityQueue<>();
+            queue.add(new Candidate(normalized, node, node.best));
+            while (!queue.isEmpty() && completions.size() < limit) {
+                final Candidate candidate = queue.poll();
+                if (candidate.node == null) {
+                    completions.add(candidate.text);
+                    continue;
+                }
+                if (candidate.node.count > 0) {
+                    queue.add(new Candidate(candidate.text, null, candidate.node.count));
+                }
+                for (int i = 0; i < candidate.node.keys.length; i++) {
+                    final Node child = candidate.node.children[i];
+                    queue.add(new Candidate(candidate.text + candidate.node.keys[i], child, child.best));
+                }
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Gets the amount of queries known.
+     * @return The amount of queries
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Saves the queries if any were recorded since they were last saved.
+     * @throws IOException If the queries could not be written
+     */
+    public void save() throws IOException {
+        final List<Map.Entry<String, Integer>> entries;
+        synchronized (this) {
+            if (!this.dirty) {
+                return;
+            }
+            entries = this.entries();
+            this.dirty = false;
+        }
+        final File parent = this.file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        final File temporary = new File(parent, this.file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(entries.size());
+            for (Map.Entry<String, Integer> entry : entries) {
+                output.writeUTF(entry.getKey());
+                output.writeInt(entry.getValue());
+            }
+        }
+        Files.move(temporary.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stops saving periodically and saves the queries a last time.
+     */
+    public void shutdown() {
+        if (this.task != null) {
+            this.task.cancel();
+        }
+        this.trySave();
+    }
+
+    private void trySave() {
+        try {
+            this.save();
+        } catch (IOException e) {
+            Enquiry.instance.logger.warn("Could not save the queries to " + this.file, e);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!this.file.isFile()) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if (input.readInt() != MAGIC) {
+                return;
+            }
+            final int count = input.readInt();
+            final List<Map.Entry<String, Integer>> entries;
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    if (insert(this.root, input.readUTF(), input.readInt())) {
+                        this.size++;
+                    }
+                }
+                entries = this.startPruning();
+            }
+            if (entries != null) {
+                this.prune(entries);
+            }
+        }
+    }
+
+    /**
+     * Inserts a query into a trie or adds to its count if it is known.
+     * @param root The root of the trie
+     * @param query The query
+     * @param count The count to add
+     * @return True if the query was not known, false otherwise
+     */
+    private static boolean insert(Node root, String query, int count) {
+        final Node[] path = new Node[query.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < query.length(); i++) {
+            node = node.child(query.charAt(i), true);
+            path[i + 1] = node;
+        }
+        final boolean added = node.count == 0;
+        node.count += count;
+        for (Node parent : path) {
+            parent.best = Math.max(parent.best, node.count);
+        }
+        return added;
+    }
+
+    /**
+     * Starts pruning if the trie holds more than the maximum amount of queries, must be called holding the monitor.
+     * @return The queries to prune or null if the trie is not full
+     */
+    private List<Map.Entry<String, Integer>> startPruning() {
+        if (this.size <= this.maxEntries) {
+            return null;
+        }
+        this.recorded = Lists.newArrayList();
+        return this.entries();
+    }
+
+    /**
+     * Builds a trie of the most searched queries and swaps it in.
+     * <p>
+     * Sorting and building are done without holding the monitor so completions and recording go on with the full trie meanwhile, the
+     * queries recorded in the meantime are added to the pruned trie when it is swapped in.
+     * @param entries The queries of the full trie
+     */
+    private void prune(List<Map.Entry<String, Integer>> entries) {
+        entries.sort((first, second) -> Integer.compare(second.getValue(), first.getValue()));
+        final Node root = new Node();
+        int size = 0;
+        // Keep room to grow so pruning does not happen on every new query
+        final int keep = Math.min(entries.size(), this.maxEntries * 3 / 4);
+        for (int i = 0; i < keep; i++) {
+            // Halved so queries searched long ago give way to what is searched now
+            if (insert(root, entries.get(i).getKey(), Math.max(1, entries.get(i).getValue() / 2))) {
+                size++;
+            }
+        }
+        synchronized (this) {
+            for (Map.Entry<String, Integer> entry : this.recorded) {
+                if (insert(root, entry.getKey(), entry.getValue())) {
+                    size++;
+                }
+            }
+            this.root = root;
+            this.size = size;
+            this.recorded = null;
+        }
+    }
+
+    private List<Map.Entry<String, Integer>> entries() {
+        final List<Map.Entry<String, Integer>> entries = Lists.newArrayListWithCapacity(this.size);
+        collect(this.root, new StringBuilder(), entries);
+        return entries;
+    }
+
+    private static void collect(Node node, StringBuilder text, List<Map.Entry<String, Integer>> entries) {
+        if (node.count > 0) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(text.toString(), node.count));
+        }
+        for (int i = 0; i < node.keys.length; i++) {
+            text.append(node.keys[i]);
+            collect(node.children[i], text, entries);
+            text.setLength(text.length() - 1);
+        }
+    }
+
+    private static final class Node {
+
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int count;
+        private int best;
+
+        Node child(char key, boolean create) {
+            final int index = Arrays.binarySearch(this.keys, key);
+            if (index >= 0) {
+                return this.children[index];
+            }
+            if (!create) {
+                return null;
+            }
+            final int insert = -index - 1;
+            final char[] keys = new char[this.keys.length + 1];
+            final Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, insert);
+            System.arraycopy(this.children, 0, children, 0, insert);
+            System.arraycopy(this.keys, insert, keys, insert + 1, this.keys.length - insert);
+            System.arraycopy(this.children, insert, children, insert + 1, this.children.length - insert);
+            final Node child = new Node();
+            keys[insert] = key;
+            children[insert] = child;
+            this.keys = keys;
+            this.children = children;
+            return child;
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        private final String text;
+        private final Node node;
+        private final int weight;
+
+        Candidate(String text, Node node, int weight) {
+            this.text = text;
+            this.node = node;
+            this.weight = weight;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (this.weight != other.weight) {
+                return Integer.compare(other.weight, this.weight);
+            }
+            // Complete queries before the longer queries below them
+            return Boolean.compare(this.node != null, other.node != null);
+        }
+    }
+}
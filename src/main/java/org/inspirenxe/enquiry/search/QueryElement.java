@@ -0,0 +1,90 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import org.inspirenxe.enquiry.Enquiry;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.util.command.CommandSource;
+import org.spongepowered.api.util.command.args.ArgumentParseException;
+import org.spongepowered.api.util.command.args.CommandArgs;
+import org.spongepowered.api.util.command.args.CommandContext;
+import org.spongepowered.api.util.command.args.CommandElement;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Takes the remaining arguments joined by spaces as the query, and completes it from the queries searched before.
+ * <p>
+ * The client replaces the word being typed with a completion, so completions start at that word.
+ */
+public class QueryElement extends CommandElement {
+
+    private static final int COMPLETIONS = 10;
+
+    public QueryElement(Text key) {
+        super(key);
+    }
+
+    @Override
+    protected Object parseValue(CommandSource source, CommandArgs args) throws ArgumentParseException {
+        final StringBuilder query = new StringBuilder(args.next());
+        while (args.hasNext()) {
+            query.append(' ').append(args.next());
+        }
+        return query.toString();
+    }
+
+    @Override
+    public List<String> complete(CommandSource source, CommandArgs args, CommandContext context) {
+        if (!Enquiry.instance.storage.getConfig().isCompletionEnabled()) {
+            return Collections.emptyList();
+        }
+        final List<String> words = Lists.newArrayList();
+        while (args.hasNext()) {
+            try {
+                words.add(args.next());
+            } catch (ArgumentParseException e) {
+                break;
+            }
+        }
+        final String raw = args.getRaw();
+        if (words.isEmpty() || raw.isEmpty() || Character.isWhitespace(raw.charAt(raw.length() - 1))) {
+            // Starting a new word
+            words.add("");
+        }
+        final String prefix = Joiner.on(' ').join(words);
+        final int start = prefix.length() - words.get(words.size() - 1).length();
+        final List<String> completions = Lists.newArrayList();
+        for (String completion : Enquiry.instance.completer.complete(prefix, COMPLETIONS)) {
+            if (completion.length() > start) {
+                completions.add(completion.substring(start));
+            }
+        }
+        return completions;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import org.inspirenxe.enquiry.EngineConfig;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Limits the rate and daily amount of upstream calls of an engine.
+ * <p>
+ * The daily quota resets at midnight UTC. The day and the amount of calls made on it are packed in a single atomic long so neither
+ * check takes a lock.
+ */
+public class RateLimiter {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final SearchEngine engine;
+    private final TokenBucket bucket;
+    private final int dailyQuota;
+    private final AtomicLong usage = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+
+    public RateLimiter(SearchEngine engine, double perSecond, int burst, int dailyQuota) {
+        this.engine = engine;
+        this.bucket = new TokenBucket(perSecond, burst);
+        this.dailyQuota = dailyQuota;
+    }
+
+    /**
+     * Creates the limiter for an engine from the options under engines.&lt;id&gt;.options.rate-limit
+     * @param engine The engine
+     * @return The {@link RateLimiter}
+     */
+    public static RateLimiter of(SearchEngine engine) {
+        final EngineConfig config = Enquiry.instance.storage.getConfig().getEngine(engine.getId());
+        return new RateLimiter(engine, config.getRateLimitPerSecond(), config.getRateLimitBurst(), config.getRateLimitDailyQuota());
+    }
+
+    /**
+     * Performs the call if neither the rate limit nor the daily quota has been reached.
+     * <p>
+     * The token and quota are given back when the call is rejected before reaching upstream, because the circuit breaker is open or
+     * Enquiry is busy.
+     * @param call The call
+     * @param <T> The type of the result
+     * @return The future result, completed exceptionally with a {@link RateLimitedException} if a limit was reached
+     */
+    public <T> CompletableFuture<T> guard(Supplier<CompletableFuture<T>> call) {
+        if (!this.bucket.tryAcquire()) {
+            return this.reject(SearchFailureEvent.Reason.RATE_LIMITED, this.engine.getPlainName() + " is receiving too many "
+                    + "searches");
+        }
+        if (!this.tryUseQuota()) {
+            return this.reject(SearchFailureEvent.Reason.QUOTA_EXCEEDED, "The daily quota of " + this.engine.getPlainName() + " has "
+                    + "been used up");
+        }
+        final CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RejectedExecutionException e) {
+            this.refund();
+            throw e;
+        }
+        return future.whenComplete((result, throwable) -> {
+            if (throwable != null && isRejection(SearchTask.unwrap(throwable))) {
+                this.refund();
+            }
+        });
+    }
+
+    private static boolean isRejection(Throwable throwable) {
+        return throwable instanceof CircuitOpenException || throwable instanceof RejectedExecutionException
+                || throwable instanceof SearchBusyException;
+    }
+
+    private void refund() {
+        this.bucket.release();
+        if (this.dailyQuota <= 0) {
+            return;
+        }
+        final long today = System.currentTimeMillis() / DAY;
+        while (true) {
+            final long current = this.usage.get();
+            if ((current >>> 32) != today || (current & 0xFFFFFFFFL) == 0 || this.usage.compareAndSet(current, current - 1)) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryUseQuota() {
+        if (this.dailyQuota <= 0) {
+            return true;
+        }
+        final long today = System.currentTimeMillis() / DAY;
+        while (true) {
+            final long current = this.usage.get();
+            final long used = (current >>> 32) == today ? current & 0xFFFFFFFFL : 0;
+            if (used >= this.dailyQuota) {
+                return false;
+            }
+            if (this.usage.compareAndSet(current, (today << 32) | (used + 1))) {
+                return true;
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> reject(SearchFailureEvent.Reason reason, String message) {
+        this.limited.incrementAndGet();
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new RateLimitedException(reason, message));
+        return future;
+    }
+
+    /**
+     * Gets the amount of upstream calls made today.
+     * @return The quota used
+     */
+    public long getQuotaUsed() {
+        final long current = this.usage.get();
+        return (current >>> 32) == System.currentTimeMillis() / DAY ? current & 0xFFFFFFFFL : 0;
+    }
+
+    /**
+     * Gets the daily quota.
+     * @return The daily quota, 0 or less if unlimited
+     */
+    public int getDailyQuota() {
+        return this.dailyQuota;
+    }
+
+    /**
+     * Gets the amount of calls rejected by the rate limit or quota.
+     * @return The limited count
+     */
+    public long getLimitedCount() {
+        return this.limited.get();
+    }
+}
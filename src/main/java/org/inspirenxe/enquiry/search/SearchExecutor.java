@@ -0,0 +1,253 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The executor performing searches.
+ * <p>
+ * Tasks are queued in a bounded queue and rejected once it is full, and every engine is limited to a configured amount of concurrent
+ * upstream calls so a slow engine cannot occupy every thread.
+ * <p>
+ * Upstream calls block on the network, they run on separate I/O threads so searches, cache lookups and hedges are not queued behind
+ * them. I/O threads are started as calls need them, the bulkheads of the engines bound how many calls are in flight.
+ */
+public class SearchExecutor implements Executor {
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(
+            "Enquiry Timer").setDaemon(true).build());
+    private final ThreadPoolExecutor io = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("Enquiry I/O #%d").setDaemon(true).build());
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public SearchExecutor(int threads, int queueSize) {
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder().setNameFormat("Enquiry Search #%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates the executor from the options under options.executor
+     * @return The {@link SearchExecutor}
+     */
+    public static SearchExecutor create() {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        return new SearchExecutor(config.getExecutorThreads(), config.getExecutorQueueSize());
+    }
+
+    /**
+     * Queues the task.
+     * @param task The task
+     * @throws RejectedExecutionException Thrown when the queue is full
+     */
+    @Override
+    public void execute(Runnable task) {
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            this.rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the executor blocking upstream calls run on, only meant for calls made within {@link #bulkhead(SearchEngine, Supplier)}.
+     * @return The I/O executor
+     */
+    public Executor io() {
+        return this.io;
+    }
+
+    /**
+     * Runs the task on the search threads after the delay.
+     * @param task The task
+     * @param delay The delay
+     * @param unit The unit of the delay
+     * @return The {@link ScheduledFuture} of the delay
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return this.schedule(task, delay, unit, () -> {
+            // Shutting down or saturated, timed work is best effort
+        });
+    }
+
+    /**
+     * Runs the task on the search threads after the delay, or the rejection handler on the timer thread when the search threads are
+     * saturated or shutting down.
+     * @param task The task
+     * @param delay The delay
+     * @param unit The unit of the delay
+     * @param rejected The rejection handler, must be quick as it may hold up other timed work
+     * @return The {@link ScheduledFuture} of the delay
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit, Runnable rejected) {
+        return this.timer.schedule(() -> {
+            try {
+                this.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected.run();
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Runs the task on the search threads after the delay, or on the timer thread when the search threads are saturated so the task is
+     * never dropped.
+     * <p>
+     * Meant for deadlines, the task must be quick as it may hold up other timed work.
+     * @param task The task
+     * @param delay The delay
+     * @param unit The unit of the delay
+     * @return The {@link ScheduledFuture} of the delay
+     */
+    public ScheduledFuture<?> deadline(Runnable task, long delay, TimeUnit unit) {
+        return this.timer.schedule(() -> {
+            try {
+                this.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Performs an upstream call of the engine if the engine has not reached its limit of concurrent calls.
+     * @param engine The engine
+     * @param call The call
+     * @param <T> The type of the result
+     * @return The future result, completed exceptionally with a {@link SearchBusyException} if the engine is at its limit
+     */
+    public <T> CompletableFuture<T> bulkhead(SearchEngine engine, Supplier<CompletableFuture<T>> call) {
+        final Bulkhead bulkhead = this.getBulkhead(engine);
+        if (!bulkhead.permits.tryAcquire()) {
+            this.rejected.incrementAndGet();
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(new SearchBusyException(engine));
+            return future;
+        }
+        final CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            bulkhead.permits.release();
+            throw e;
+        }
+        future.whenComplete((result, throwable) -> bulkhead.permits.release());
+        return future;
+    }
+
+    /**
+     * Applies the concurrency limits of engines in a reloaded configuration. Calls in flight return their permit to the limit they were
+     * started under, so until they complete an engine whose limit was lowered may exceed it by the calls it already had in flight.
+     * @param config The configuration
+     */
+    public void configure(EnquiryConfig config) {
+        this.bulkheads.replaceAll((id, bulkhead) -> {
+            final int limit = config.getEngine(id).getMaxConcurrent();
+            return limit == bulkhead.limit ? bulkhead : new Bulkhead(limit);
+        });
+    }
+
+    /**
+     * Gets the amount of tasks waiting for a thread.
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Gets the amount of threads executing a task.
+     * @return The active count
+     */
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
+
+    /**
+     * Gets the amount of upstream calls the engine is currently performing.
+     * @param engine The engine
+     * @return The active count
+     */
+    public int getActiveCount(SearchEngine engine) {
+        final Bulkhead bulkhead = this.getBulkhead(engine);
+        return bulkhead.limit - bulkhead.permits.availablePermits();
+    }
+
+    /**
+     * Gets the amount of tasks and upstream calls that were rejected.
+     * @return The rejected count
+     */
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Stops the executor, discarding queued tasks.
+     */
+    public void shutdown() {
+        this.timer.shutdownNow();
+        this.executor.shutdownNow();
+        this.io.shutdownNow();
+    }
+
+    private Bulkhead getBulkhead(SearchEngine engine) {
+        return this.bulkheads.computeIfAbsent(engine.getId(), id -> new Bulkhead(Enquiry.instance.storage.getConfig().getEngine(id)
+                .getMaxConcurrent()));
+    }
+
+    private static class Bulkhead {
+
+        private final int limit;
+        private final Semaphore permits;
+
+        private Bulkhead(int limit) {
+            this.limit = limit;
+            this.permits = new Semaphore(limit);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.EnquiryConfig;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last page of results each command source viewed so it can move on to the next page, and when options.paging.prefetch is
+ * enabled prefetches that page in the background so it is usually cached by the time it is asked for. Prefetching is off by default as
+ * every page prefetched but never viewed is a call paid for and counted against the quota of the engine.
+ * <p>
+ * Sessions of sources that have not searched for a while are discarded.
+ */
+public class SearchSessions {
+
+    private final Cache<String, Session> sessions;
+    private volatile boolean prefetch;
+    private final AtomicLong prefetched = new AtomicLong();
+
+    public SearchSessions(long timeout, boolean prefetch) {
+        this.sessions = CacheBuilder.newBuilder()
+                .expireAfterAccess(timeout, TimeUnit.SECONDS)
+                .build();
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * Creates the sessions from the options under options.paging
+     * @return The {@link SearchSessions}
+     */
+    public static SearchSessions create() {
+        final EnquiryConfig config = Enquiry.instance.storage.getConfig();
+        return new SearchSessions(config.getPagingSessionTimeout(), config.isPagingPrefetch());
+    }
+
+    /**
+     * Applies a reloaded configuration. The session timeout only changes on restart.
+     * @param config The configuration
+     */
+    public void configure(EnquiryConfig config) {
+        this.prefetch = config.isPagingPrefetch();
+    }
+
+    /**
+     * Gets the last page of results the source viewed.
+     * @param source The source
+     * @return The session or null if the source has not searched recently
+     */
+    public Session get(CommandSource source) {
+        return this.sessions.getIfPresent(key(source));
+    }
+
+    /**
+     * Records the page of results the source viewed and, when it was a full page, prefetches the next one.
+     * @param source The source searching
+     * @param target The source the results were sent to
+     * @param engine The engine searched with
+     * @param query The query
+     * @param page The page
+     * @param response The response
+     * @return The session
+     */
+    public Session update(CommandSource source, CommandSource target, SearchEngine engine, String query, int page,
+            SearchResponse response) {
+        final Session session = new Session(target, engine, query, page, response);
+        this.sessions.put(key(source), session);
+        if (this.prefetch && session.hasNext()) {
+            this.prefetched.incrementAndGet();
+            // Failures are left to the search of the next page itself
+            engine.lookup(query, page + 1);
+        }
+        return session;
+    }
+
+    /**
+     * Gets the amount of pages prefetched.
+     * @return The prefetched count
+     */
+    public long getPrefetchedCount() {
+        return this.prefetched.get();
+    }
+
+    private static String key(CommandSource source) {
+        return source instanceof Player ? ((Player) source).getUniqueId().toString() : source.getName();
+    }
+
+    /**
+     * The last page of results a source viewed.
+     */
+    public static class Session {
+
+        private final CommandSource target;
+        private final SearchEngine engine;
+        private final String query;
+        private final int page;
+        private final SearchResponse response;
+
+        Session(CommandSource target, SearchEngine engine, String query, int page, SearchResponse response) {
+            this.target = target;
+            this.engine = engine;
+            this.query = query;
+            this.page = page;
+            this.response = response;
+        }
+
+        /**
+         * Gets the source the results were sent to.
+         * @return The target
+         */
+        public CommandSource getTarget() {
+            return target;
+        }
+
+        /**
+         * Gets the engine searched with.
+         * @return The engine
+         */
+        public SearchEngine getEngine() {
+            return engine;
+        }
+
+        /**
+         * Gets the query.
+         * @return The query
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Gets the page viewed.
+         * @return The page
+         */
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * Gets the response of the page viewed.
+         * @return The response
+         */
+        public SearchResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * Gets if there likely is a next page, which is when the engine has pages and this page was full.
+         * @return True if there is a next page, false otherwise
+         */
+        public boolean hasNext() {
+            return engine.hasPages() && response.getResults().size() >= engine.getPageSize();
+        }
+    }
+}
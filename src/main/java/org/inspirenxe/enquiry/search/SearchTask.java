@@ -0,0 +1,274 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+import org.inspirenxe.enquiry.api.event.SearchPreEvent;
+import org.inspirenxe.enquiry.api.event.SearchSuccessEvent;
+import org.inspirenxe.enquiry.metrics.SearchMetrics;
+import org.spongepowered.api.entity.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.TextMessageException;
+import org.spongepowered.api.util.command.CommandSource;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Performs a search requested by a {@link CommandSource} and sends the results to the target.
+ */
+public class SearchTask implements Runnable {
+
+    private final CommandSource src;
+    private final CommandSource target;
+    private final SearchEngine engine;
+    private final String query;
+    private final int page;
+    private final long created = System.nanoTime();
+
+    public SearchTask(CommandSource src, CommandSource target, SearchEngine engine, String query) {
+        this(src, target, engine, query, 1);
+    }
+
+    public SearchTask(CommandSource src, CommandSource target, SearchEngine engine, String query, int page) {
+        this.src = src;
+        this.target = target;
+        this.engine = engine;
+        this.query = query;
+        this.page = page;
+    }
+
+    @Override
+    public void run() {
+        engine.getMetrics().recordSince(SearchMetrics.Stage.QUEUE_WAIT, created);
+        final long start = System.nanoTime();
+        final SearchPreEvent preEvent = new SearchPreEvent(target, engine, query);
+        final boolean cancelled = Enquiry.instance.game.getEventManager().post(preEvent);
+        engine.getMetrics().recordSince(SearchMetrics.Stage.PRE_EVENT, start);
+        if (cancelled) {
+            engine.getMetrics().cancelled();
+            return;
+        }
+        if (!Enquiry.instance.playerRateLimiter.tryAcquire(src)) {
+            onFailure(preEvent.engine, new RateLimitedException(SearchFailureEvent.Reason.RATE_LIMITED, "You are searching too quickly"));
+            return;
+        }
+        final ResultStream stream = Enquiry.instance.storage.getConfig().isStreamingEnabled() ? new ResultStream(preEvent.engine) : null;
+        preEvent.engine.lookup(query, page, stream).whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                try {
+                    onSuccess(preEvent.engine, response, stream);
+                } catch (IOException | TextMessageException e) {
+                    onFailure(preEvent.engine, e);
+                }
+            } else {
+                onFailure(preEvent.engine, unwrap(throwable));
+            }
+        });
+    }
+
+    private void onSuccess(SearchEngine engine, SearchResponse response, ResultStream stream) throws IOException, TextMessageException {
+        final SearchSuccessEvent event = new SearchSuccessEvent(target, engine, query, response.getResults(), response.getEngine());
+        if (Enquiry.instance.game.getEventManager().post(event)) {
+            engine.getMetrics().cancelled();
+            return;
+        }
+        final long start = System.nanoTime();
+        // Streamed results were already sent, listeners may have removed, reordered or added results since so the results left are the
+        // ones whose URL was not streamed, numbered after the streamed ones
+        final Multiset<String> streamed = stream == null ? ConcurrentHashMultiset.create() : stream.getSent();
+        int number = streamed.size();
+        final List<Text> messages = new ArrayList<>(Math.max(0, event.results.size() - number) + 2);
+        if (number == 0) {
+            messages.add(header(event.servingEngine));
+        }
+        final LineTemplate template = event.servingEngine.getLineTemplate();
+        final String engineName = Texts.legacy('&').to(event.servingEngine.getName());
+        for (SearchResult result : event.results) {
+            if (!streamed.remove(result.getUrl())) {
+                messages.add(template.render(engineName, query, number(engine, number++), result));
+            }
+        }
+        engine.getMetrics().recordSince(SearchMetrics.Stage.RENDER, start);
+        engine.getMetrics().success(event.results.size());
+        if (page == 1 && !event.results.isEmpty()) {
+            Enquiry.instance.completer.record(query);
+        }
+        final SearchSessions.Session session = Enquiry.instance.sessions.update(src, target, engine, query, page, response);
+        if (session.hasNext() && target == src) {
+            messages.add(Texts.builder("[Next page]")
+                    .color(TextColors.AQUA)
+                    .onClick(TextActions.runCommand("/eq next"))
+                    .onHover(TextActions.showText(Texts.of("Shows page ", page + 1, " of the results")))
+                    .build());
+        }
+        if (messages.isEmpty()) {
+            // Every line was streamed, the search is done once the last was queued
+            engine.getMetrics().recordSince(SearchMetrics.Stage.TOTAL, created);
+        }
+        Enquiry.instance.delivery.deliver(target, messages, engine.getMetrics(), created);
+    }
+
+    private Text header(SearchEngine servingEngine) throws MalformedURLException {
+        return Texts.of(
+                "(", Texts.of(servingEngine.getName()).builder()
+                        .onClick(TextActions.openUrl(new URL(servingEngine.getUrl())))
+                        .onHover(TextActions.showText(Texts.of(servingEngine.getUrl())))
+                        .build(),
+                TextColors.RESET, ") Result(s) for: ", TextColors.YELLOW, query,
+                page > 1 ? Texts.of(TextColors.RESET, " (page ", page, ")") : "");
+    }
+
+    /**
+     * Gets the number shown for a result, results are numbered across pages so the next page continues where this one ended.
+     * @param engine The engine searched with
+     * @param index The index of the result on the page
+     * @return The number
+     */
+    private int number(SearchEngine engine, int index) {
+        return (page - 1) * engine.getPageSize() + index + 1;
+    }
+
+    private void onFailure(SearchEngine engine, Throwable throwable) {
+        final SearchFailureEvent.Reason reason = reasonOf(throwable);
+        engine.getMetrics().failure(reason);
+        if (Enquiry.instance.game.getEventManager().post(new SearchFailureEvent(target, engine, query, reason))) {
+            return;
+        }
+        switch (reason) {
+            case BUSY:
+                Enquiry.instance.delivery.deliver(src, Texts.of(TextColors.RED, "Search busy, ", engine.getName(), TextColors.RED,
+                        " is handling too many searches. Please try again shortly."));
+                break;
+            case UNAVAILABLE:
+                Enquiry.instance.delivery.deliver(src, Texts.of(engine.getName(), TextColors.RED,
+                        " is currently unavailable, please try again later."));
+                Enquiry.instance.logger.debug(throwable.getMessage());
+                break;
+            case RATE_LIMITED:
+            case QUOTA_EXCEEDED:
+                Enquiry.instance.delivery.deliver(src, Texts.of(TextColors.RED, throwable.getMessage(), ", please try again later."));
+                break;
+            default:
+                if (src instanceof Player) {
+                    Enquiry.instance.delivery.deliver(src, Texts.of("An error occurred while attempting to search ", engine.getName(),
+                            " for ", TextColors.YELLOW, query));
+                }
+                Enquiry.instance.logger.warn("An error occurred while attempting to search " + engine.getPlainName() + " for " + query,
+                        throwable);
+        }
+    }
+
+    /**
+     * Sends the header and each result to the target as soon as the engine has read it, ahead of the rest of the response.
+     * <p>
+     * Only called when the lookup streams, results that could not be rendered stop the stream and are sent once the search completed.
+     */
+    private class ResultStream implements Consumer<SearchResult> {
+
+        private final SearchEngine engine;
+        private final Multiset<String> sent = ConcurrentHashMultiset.create();
+        private volatile boolean stopped;
+
+        private ResultStream(SearchEngine engine) {
+            this.engine = engine;
+        }
+
+        @Override
+        public void accept(SearchResult result) {
+            if (this.stopped) {
+                return;
+            }
+            final List<Text> messages = new ArrayList<>(2);
+            try {
+                if (this.sent.isEmpty()) {
+                    messages.add(header(this.engine));
+                }
+                messages.add(this.engine.getLineTemplate().render(Texts.legacy('&').to(this.engine.getName()), query,
+                        number(this.engine, this.sent.size()), result));
+            } catch (IOException | TextMessageException e) {
+                this.stopped = true;
+                return;
+            }
+            Enquiry.instance.delivery.deliver(target, messages);
+            this.sent.add(result.getUrl());
+            if (this.sent.size() == 1) {
+                this.engine.getMetrics().recordSince(SearchMetrics.Stage.FIRST_RESULT, created);
+            }
+        }
+
+        /**
+         * Gets the URLs of the results sent.
+         * @return The URLs
+         */
+        private Multiset<String> getSent() {
+            return this.sent;
+        }
+    }
+
+    /**
+     * Gets the reason a search failed with the throwable.
+     * @param throwable The throwable
+     * @return The reason
+     */
+    public static SearchFailureEvent.Reason reasonOf(Throwable throwable) {
+        if (throwable instanceof SearchBusyException || throwable instanceof RejectedExecutionException) {
+            return SearchFailureEvent.Reason.BUSY;
+        } else if (throwable instanceof CircuitOpenException) {
+            return SearchFailureEvent.Reason.UNAVAILABLE;
+        } else if (throwable instanceof RateLimitedException) {
+            return ((RateLimitedException) throwable).getReason();
+        }
+        return SearchFailureEvent.Reason.ERROR;
+    }
+
+    /**
+     * Gets the exception that caused a future to complete exceptionally.
+     * @param throwable The throwable the future completed with
+     * @return The cause
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        while ((throwable instanceof CompletionException || throwable instanceof ExecutionException) && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+}
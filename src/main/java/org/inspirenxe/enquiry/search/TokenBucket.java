@@ -0,0 +1,87 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.
+ * <p>
+ * Implemented as a generic cell rate algorithm, the bucket only tracks the time at which it will be full again in a single atomic
+ * long so acquiring a token is a read and a compare-and-set.
+ */
+public class TokenBucket {
+
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a bucket.
+     * @param perSecond The tokens added per second, 0 or less for an unlimited bucket
+     * @param burst The maximum amount of tokens held
+     */
+    public TokenBucket(double perSecond, int burst) {
+        this.interval = perSecond <= 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        this.tolerance = this.interval * Math.max(1, burst);
+    }
+
+    /**
+     * Takes a token from the bucket.
+     * @return True if a token was taken, false if the bucket is empty
+     */
+    public boolean tryAcquire() {
+        if (this.interval == 0) {
+            return true;
+        }
+        final long now = System.nanoTime();
+        while (true) {
+            final long current = this.fullAt.get();
+            final long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + this.interval;
+            if (next - now > this.tolerance) {
+                return false;
+            }
+            if (this.fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a token taken for a call that was not made.
+     */
+    public void release() {
+        if (this.interval == 0) {
+            return;
+        }
+        while (true) {
+            final long current = this.fullAt.get();
+            if (current == Long.MIN_VALUE || this.fullAt.compareAndSet(current, current - this.interval)) {
+                return;
+            }
+        }
+    }
+}
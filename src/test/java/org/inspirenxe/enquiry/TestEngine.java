@@ -0,0 +1,94 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry;
+
+import org.inspirenxe.enquiry.api.engine.SearchEngine;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * An engine that finds nothing, for testing the components of an engine.
+ */
+public class TestEngine extends SearchEngine {
+
+    public TestEngine(String id) {
+        super(null, id);
+    }
+
+    /**
+     * Creates a future completed exceptionally.
+     * @param throwable The throwable
+     * @param <T> The type of the result
+     * @return The future
+     */
+    public static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    /**
+     * Gets the throwable a future completed exceptionally with.
+     * @param future The completed future
+     * @return The throwable or null if the future completed normally
+     */
+    public static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Override
+    public Text getName() {
+        return Texts.of("Test");
+    }
+
+    @Override
+    public String getPlainName() {
+        return "Test";
+    }
+
+    @Override
+    public String getUrl() {
+        return "https://example.com";
+    }
+
+    @Override
+    public String getSearchUrl() {
+        return "https://example.com/search";
+    }
+
+    @Override
+    public CompletableFuture<SearchResults> search(String query) {
+        return CompletableFuture.completedFuture(SearchResults.EMPTY);
+    }
+}
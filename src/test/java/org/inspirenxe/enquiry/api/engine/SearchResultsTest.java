@@ -0,0 +1,138 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.api.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SearchResultsTest {
+
+    @Test
+    public void readsWhatWasAdded() {
+        final SearchResults results = SearchResults.builder(1)
+                .add("Redstone", "A dust that carries power", "https://example.com/wiki/Redstone?action=view#top")
+                .add("Ünïcödé ✓ 日本語", "Émoji 😀 and accents", "https://例え.jp/パス")
+                .add("Host only", null, "https://example.com")
+                .add("Relative", null, "relative/path")
+                .build();
+        assertEquals(4, results.size());
+        assertResult("Redstone", "A dust that carries power", "https://example.com/wiki/Redstone?action=view#top", results.get(0));
+        assertResult("Ünïcödé ✓ 日本語", "Émoji 😀 and accents", "https://例え.jp/パス", results.get(1));
+        assertResult("Host only", null, "https://example.com", results.get(2));
+        assertResult("Relative", null, "relative/path", results.get(3));
+    }
+
+    @Test
+    public void readsEmptyStringsAsNull() {
+        final SearchResults results = SearchResults.builder(1).add("", "", "https://example.com/").build();
+        assertResult(null, null, "https://example.com/", results.get(0));
+    }
+
+    @Test
+    public void buildsEmptyResults() {
+        assertSame(SearchResults.EMPTY, SearchResults.builder(10).build());
+        assertTrue(SearchResults.EMPTY.isEmpty());
+    }
+
+    @Test
+    public void copiesOtherLists() {
+        final SearchResults results = SearchResults.builder(1).add("Redstone", null, "https://example.com/redstone").build();
+        assertSame(results, SearchResults.of(results));
+        final List<SearchResult> list = ImmutableList.of(results.get(0), results.get(0));
+        final SearchResults copy = SearchResults.of(list);
+        assertEquals(2, copy.size());
+        assertResult("Redstone", null, "https://example.com/redstone", copy.get(1));
+    }
+
+    @Test
+    public void skipsResultsWithoutUrl() {
+        final SearchResults results = SearchResults.builder(3).add("No url", null, null).add("Empty url", null, "")
+                .add("Redstone", null, "https://example.com/redstone").build();
+        assertEquals(1, results.size());
+        assertResult("Redstone", null, "https://example.com/redstone", results.get(0));
+    }
+
+    @Test
+    public void copiesOnlyResultsWithUrl() {
+        final SearchResult redstone = SearchResults.builder(1).add(null, null, "https://example.com/redstone").build().get(0);
+        final SearchResults copy = SearchResults.of(Arrays.asList(null, result("No url", null), redstone));
+        assertEquals(1, copy.size());
+        assertResult(null, null, "https://example.com/redstone", copy.get(0));
+    }
+
+    @Test
+    public void retainsLessThanStrings() {
+        final SearchResults.Builder builder = SearchResults.builder(0);
+        for (int i = 0; i < 100; i++) {
+            builder.add("Result " + i, "The description of result " + i, "https://example.com/results/" + i);
+        }
+        final SearchResults results = builder.build();
+        assertEquals(100, results.size());
+        assertResult("Result 99", "The description of result 99", "https://example.com/results/99", results.get(99));
+        int strings = 0;
+        for (SearchResult result : results) {
+            // The characters of a string take two bytes each
+            strings += (result.getTitle().length() + result.getDescription().length() + result.getUrl().length()) * 2;
+        }
+        assertTrue(results.getRetainedSize() + " bytes retained", results.getRetainedSize() < strings);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexOutOfBounds() {
+        SearchResults.builder(1).add("Redstone", null, "https://example.com/redstone").build().get(1);
+    }
+
+    private static SearchResult result(String title, String url) {
+        return new SearchResult() {
+            @Override
+            public String getTitle() {
+                return title;
+            }
+
+            @Override
+            public String getDescription() {
+                return null;
+            }
+
+            @Override
+            public String getUrl() {
+                return url;
+            }
+        };
+    }
+
+    private static void assertResult(String title, String description, String url, SearchResult result) {
+        assertEquals(title, result.getTitle());
+        assertEquals(description, result.getDescription());
+        assertEquals(url, result.getUrl());
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.api.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Strings;
+import com.google.common.io.CharStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.Texts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+public class HttpTransportTest {
+
+    private static final Text NAME = Texts.of("Test");
+    private static final char[] PASSWORD = "enquiry".toCharArray();
+    private static final String LARGE = Strings.repeat("a", 256 * 1024);
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private SSLSocketFactory defaultFactory;
+    private HttpsServer server;
+    private HttpTransport transport;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        final SSLContext context = context();
+        this.server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setHttpsConfigurator(new HttpsConfigurator(context));
+        this.server.createContext("/", this::handle);
+        this.server.start();
+        this.defaultFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(context.getSocketFactory());
+        this.transport = new HttpTransport(5000, 5000, 5);
+        this.url = "https://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        HttpsURLConnection.setDefaultSSLSocketFactory(this.defaultFactory);
+        this.server.stop(0);
+    }
+
+    @Test
+    public void reusesConnection() throws IOException {
+        assertEquals("Redstone", this.readAll("/utf-8"));
+        assertEquals("Redstone", this.readAll("/utf-8"));
+        this.assertSingleConnection("GET", "GET");
+    }
+
+    @Test
+    public void drainsUnreadBody() throws IOException {
+        assertEquals('a', (char) this.transport.read(this.transport.get(this.url + "/large"), NAME, body -> body.read()).intValue());
+        assertEquals(LARGE, this.readAll("/large"));
+        this.assertSingleConnection("GET", "GET");
+    }
+
+    @Test
+    public void decodesDeclaredCharset() throws IOException {
+        assertEquals("Café", this.readAll("/latin-1"));
+    }
+
+    @Test
+    public void decodesUtf8ByDefault() throws IOException {
+        assertEquals("Café", this.readAll("/undeclared"));
+    }
+
+    /**
+     * The server of the JDK closes the connection after answering a HEAD request, so only the request is checked and not its reuse.
+     */
+    @Test
+    public void warmsWhateverTheStatus() throws IOException {
+        this.transport.warm(this.url + "/utf-8");
+        this.transport.warm(this.url + "/missing");
+        assertEquals(2, this.requests.size());
+        assertTrue(this.requests.get(0).startsWith("HEAD "));
+        assertTrue(this.requests.get(1).startsWith("HEAD "));
+    }
+
+    private String readAll(String path) throws IOException {
+        return this.transport.read(this.transport.get(this.url + path), NAME, CharStreams::toString);
+    }
+
+    /**
+     * Asserts the server received requests with the methods, in order, all over the same connection.
+     */
+    private void assertSingleConnection(String... methods) {
+        assertEquals(methods.length, this.requests.size());
+        final String port = this.requests.get(0).split(" ")[1];
+        for (int i = 0; i < methods.length; i++) {
+            assertEquals(methods[i] + " " + port, this.requests.get(i));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        this.requests.add(exchange.getRequestMethod() + " " + exchange.getRemoteAddress().getPort());
+        final byte[] body;
+        switch (exchange.getRequestURI().getPath()) {
+            case "/utf-8":
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                body = "Redstone".getBytes(StandardCharsets.UTF_8);
+                break;
+            case "/latin-1":
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=ISO-8859-1");
+                body = "Café".getBytes(StandardCharsets.ISO_8859_1);
+                break;
+            case "/undeclared":
+                exchange.getResponseHeaders().set("Content-Type", "text/plain");
+                body = "Café".getBytes(StandardCharsets.UTF_8);
+                break;
+            case "/large":
+                body = LARGE.getBytes(StandardCharsets.UTF_8);
+                break;
+            default:
+                body = new byte[0];
+        }
+        final int code = body.length == 0 ? 404 : 200;
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(code, -1);
+        } else {
+            exchange.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    /**
+     * Creates a context that both serves and trusts the self signed certificate of localhost in the test resources.
+     */
+    private static SSLContext context() throws Exception {
+        final KeyStore store = KeyStore.getInstance("JKS");
+        try (InputStream stream = HttpTransportTest.class.getResourceAsStream("localhost.jks")) {
+            store.load(stream, PASSWORD);
+        }
+        final KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(store, PASSWORD);
+        final TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(store);
+        final SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return context;
+    }
+}
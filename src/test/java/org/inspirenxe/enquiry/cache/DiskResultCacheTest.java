@@ -0,0 +1,188 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import org.inspirenxe.enquiry.Enquiry;
+import org.inspirenxe.enquiry.TestEngine;
+import org.inspirenxe.enquiry.TestEnquiry;
+import org.inspirenxe.enquiry.api.engine.SearchResponse;
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class DiskResultCacheTest {
+
+    private static final long TTL = TimeUnit.HOURS.toMillis(1);
+    private static final long MAX_SIZE = 100 * 1024;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Runnable> tasks = Lists.newArrayList();
+    private TestEngine engine;
+    private File directory;
+    private DiskResultCache cache;
+
+    @Before
+    public void setUp() {
+        TestEnquiry.install();
+        this.engine = new TestEngine("test");
+        this.directory = new File(this.folder.getRoot(), "enquiry-cache");
+        this.cache = new DiskResultCache(this.directory, true, TTL, MAX_SIZE, 256, this.tasks::add);
+    }
+
+    @After
+    public void tearDown() {
+        this.cache.close();
+    }
+
+    @Test
+    public void storesAndReadsResponses() {
+        this.cache.put(this.engine, "redstone", response(this.engine, "Redstone", "A dust that carries power",
+                "https://example.com/redstone"), TTL);
+        assertResult("Redstone", "A dust that carries power", "https://example.com/redstone", this.cache.get(this.engine, "redstone"));
+        assertNull(this.cache.get(this.engine, "piston"));
+        assertEquals(1, this.cache.getHitCount());
+        assertEquals(1, this.cache.getMissCount());
+    }
+
+    @Test
+    public void keysByEngine() {
+        this.cache.put(this.engine, "redstone", response(this.engine, "Redstone", null, "https://example.com/redstone"), TTL);
+        assertNull(this.cache.get(new TestEngine("other"), "redstone"));
+    }
+
+    @Test
+    public void survivesRestart() {
+        this.cache.put(this.engine, "redstone", response(this.engine, "Redstone", null, "https://example.com/redstone"), TTL);
+        this.cache.close();
+        this.cache = new DiskResultCache(this.directory, true, TTL, MAX_SIZE, 256, this.tasks::add);
+        assertResult("Redstone", null, "https://example.com/redstone", this.cache.get(this.engine, "redstone"));
+    }
+
+    @Test
+    public void resolvesServingEngine() {
+        final TestEngine fallback = new TestEngine("fallback");
+        Enquiry.instance.putEngine(fallback);
+        this.cache.put(this.engine, "redstone", response(fallback, "Redstone", null, "https://example.com/redstone"), TTL);
+        assertSame(fallback, this.cache.get(this.engine, "redstone").getEngine());
+    }
+
+    @Test
+    public void expiresEntries() {
+        this.cache.close();
+        this.cache = new DiskResultCache(this.directory, true, -1, MAX_SIZE, 256, this.tasks::add);
+        this.cache.put(this.engine, "redstone", response(this.engine, "Redstone", null, "https://example.com/redstone"), TTL);
+        assertNull(this.cache.get(this.engine, "redstone"));
+    }
+
+    @Test
+    public void keepsEntriesNoLongerThanEngine() {
+        this.cache.put(this.engine, "redstone", response(this.engine, "Redstone", null, "https://example.com/redstone"), -1);
+        assertNull(this.cache.get(this.engine, "redstone"));
+    }
+
+    @Test
+    public void evictsUnreadableRecords() throws IOException {
+        this.cache.put(this.engine, "redstone", response(this.engine, "Redstone", null, "https://example.com/redstone"), TTL);
+        this.cache.close();
+        this.writeCount(-1);
+        this.cache = new DiskResultCache(this.directory, true, TTL, MAX_SIZE, 256, this.tasks::add);
+        assertNull(this.cache.get(this.engine, "redstone"));
+        assertEquals(1, this.cache.getMissCount());
+        // Repairing the record does not bring it back, its slot no longer points at it
+        this.cache.close();
+        this.writeCount(1);
+        this.cache = new DiskResultCache(this.directory, true, TTL, MAX_SIZE, 256, this.tasks::add);
+        assertNull(this.cache.get(this.engine, "redstone"));
+    }
+
+    @Test
+    public void compactsToSizeCapKeepingNewestEntries() {
+        final String description = Strings.repeat("A long description of the result. ", 30);
+        final int count = 200;
+        for (int i = 0; i < count; i++) {
+            this.cache.put(this.engine, "query " + i, response(this.engine, "Result " + i, description, "https://example.com/" + i), TTL);
+        }
+        // Storing responses only schedules a single compaction
+        assertEquals(1, this.tasks.size());
+        this.tasks.remove(0).run();
+        long size = 0;
+        for (File file : this.directory.listFiles()) {
+            if (file.getName().startsWith("segment-")) {
+                size += file.length();
+            }
+        }
+        assertTrue("Segments take " + size + " bytes", size <= MAX_SIZE);
+        assertNull(this.cache.get(this.engine, "query 0"));
+        assertResult("Result " + (count - 1), description, "https://example.com/" + (count - 1), this.cache.get(this.engine,
+                "query " + (count - 1)));
+        // The index points into the compacted segments after a restart as well
+        this.cache.close();
+        this.cache = new DiskResultCache(this.directory, true, TTL, MAX_SIZE, 256, this.tasks::add);
+        assertNotNull(this.cache.get(this.engine, "query " + (count - 1)));
+    }
+
+    /**
+     * Overwrites the result count of the record of "redstone", which follows its length, expiry time, key and serving engine.
+     */
+    private void writeCount(int count) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(this.directory, "segment-0.log"), "rw")) {
+            file.seek(4 + 8 + 2 + "test\nredstone".length() + 2 + "test".length());
+            file.writeInt(count);
+        }
+    }
+
+    private static SearchResponse response(TestEngine servingEngine, String title, String description, String url) {
+        return new SearchResponse(servingEngine, SearchResults.builder(1).add(title, description, url).build());
+    }
+
+    private static void assertResult(String title, String description, String url, SearchResponse response) {
+        assertNotNull(response);
+        final List<? extends SearchResult> results = response.getResults();
+        assertEquals(1, results.size());
+        assertEquals(title, results.get(0).getTitle());
+        assertEquals(description, results.get(0).getDescription());
+        assertEquals(url, results.get(0).getUrl());
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LocalEngineTest {
+
+    @Test
+    public void keepsSafePaths() {
+        assertEquals("guides/farming.md", LocalEngine.encodePath("guides/farming.md"));
+    }
+
+    @Test
+    public void encodesReservedCharactersInSegments() {
+        assertEquals("server%20rules/100%25%20pvp%3F%23.md", LocalEngine.encodePath("server rules/100% pvp?#.md"));
+    }
+
+    @Test
+    public void encodesCharactersOutsideAscii() {
+        assertEquals("r%C3%A8gles.md", LocalEngine.encodePath("règles.md"));
+    }
+
+    @Test
+    public void keepsColonInFirstSegment() {
+        assertEquals("faq:pvp.md", LocalEngine.encodePath("faq:pvp.md"));
+    }
+}
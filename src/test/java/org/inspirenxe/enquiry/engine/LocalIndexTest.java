@@ -0,0 +1,150 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class LocalIndexTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File documents;
+    private File store;
+
+    @Before
+    public void setUp() throws IOException {
+        this.documents = this.folder.newFolder("documents");
+        this.store = new File(this.folder.getRoot(), "enquiry-index");
+    }
+
+    @Test
+    public void ranksByRelevance() throws IOException {
+        this.write("rules.md", "# Rules\nNo griefing. Redstone clocks are allowed.\n");
+        this.write("redstone.md", "# Redstone\nRedstone carries power. Build redstone clocks with redstone repeaters.\n");
+        this.write("spawn.txt", "# Spawn\nThe spawn is protected.\n");
+        final LocalIndex index = LocalIndex.open(this.store, "local").update(this.documents);
+        assertEquals(3, index.size());
+        assertEquals(titles("Redstone", "Rules"), titles(index.search("redstone", 0, 10)));
+        assertEquals(titles("Rules"), titles(index.search("redstone", 1, 10)));
+        assertEquals(titles("Redstone"), titles(index.search("REDSTONE clocks", 0, 1)));
+        assertTrue(index.search("nether", 0, 10).isEmpty());
+    }
+
+    @Test
+    public void readsTitleAndDescription() throws IOException {
+        this.write("guides/farming.md", "Plant seeds on tilled dirt.\n\n## Farming guide\n");
+        this.write("notes.txt", "Just notes about farming.\n");
+        final LocalIndex index = LocalIndex.open(this.store, "local").update(this.documents);
+        final LocalIndex.Document guide = index.search("tilled", 0, 1).get(0);
+        assertEquals("Farming guide", guide.getTitle());
+        assertEquals("Plant seeds on tilled dirt.", guide.getDescription());
+        assertEquals("guides/farming.md", guide.getPath());
+        assertEquals("notes", index.search("notes", 0, 1).get(0).getTitle());
+    }
+
+    @Test
+    public void indexesOnlyDocuments() throws IOException {
+        this.write("rules.md", "# Rules\nNo griefing.\n");
+        this.write("world.dat", "griefing");
+        this.write(".hidden.md", "# Hidden\ngriefing\n");
+        final LocalIndex index = LocalIndex.open(this.store, "local").update(this.documents);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void updatesChangedDocuments() throws IOException {
+        this.write("rules.md", "# Rules\nNo griefing.\n");
+        this.write("spawn.md", "# Spawn\nThe spawn is protected.\n");
+        final LocalIndex first = LocalIndex.open(this.store, "local").update(this.documents);
+        assertSame(first, first.update(this.documents));
+
+        final File rules = this.write("rules.md", "# Rules\nNo stealing.\n");
+        rules.setLastModified(rules.lastModified() + 2000);
+        Files.delete(new File(this.documents, "spawn.md").toPath());
+        this.write("shops.md", "# Shops\nShops sell griefing tools.\n");
+        final LocalIndex second = first.update(this.documents);
+        assertEquals(2, second.size());
+        assertEquals(titles("Shops"), titles(second.search("griefing", 0, 10)));
+        assertEquals(titles("Rules"), titles(second.search("stealing", 0, 10)));
+        assertTrue(second.search("spawn", 0, 10).isEmpty());
+        // The previous generation keeps serving what it indexed
+        assertEquals(titles("Rules"), titles(first.search("griefing", 0, 10)));
+    }
+
+    @Test
+    public void reopensLatestGeneration() throws IOException {
+        this.write("rules.md", "# Rules\nNo griefing.\n");
+        LocalIndex.open(this.store, "local").update(this.documents);
+        this.write("shops.md", "# Shops\nShops sell tools.\n");
+        LocalIndex.open(this.store, "local").update(this.documents);
+        final LocalIndex reopened = LocalIndex.open(this.store, "local");
+        assertEquals(2, reopened.size());
+        assertEquals(titles("Shops"), titles(reopened.search("tools", 0, 10)));
+        assertArrayEquals(new String[] {"local.2.dat"}, this.store.list());
+    }
+
+    @Test
+    public void rebuildsCorruptIndex() throws IOException {
+        this.write("rules.md", "# Rules\nNo griefing.\n");
+        Files.createDirectories(this.store.toPath());
+        Files.write(new File(this.store, "local.1.dat").toPath(), new byte[] {1, 2, 3});
+        final LocalIndex corrupt = LocalIndex.open(this.store, "local");
+        assertEquals(0, corrupt.size());
+        assertEquals(1, corrupt.update(this.documents).size());
+        assertArrayEquals(new String[] {"local.2.dat"}, this.store.list());
+    }
+
+    private File write(String path, String content) throws IOException {
+        final File file = new File(this.documents, path);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> titles(String... titles) {
+        return Arrays.asList(titles);
+    }
+
+    private static List<String> titles(List<LocalIndex.Document> documents) {
+        return documents.stream().map(LocalIndex.Document::getTitle).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import static org.inspirenxe.enquiry.TestEngine.causeOf;
+import static org.inspirenxe.enquiry.TestEngine.failedFuture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.inspirenxe.enquiry.TestEngine;
+import org.inspirenxe.enquiry.TestEnquiry;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CircuitBreakerTest {
+
+    private static final long LONG_OPEN = TimeUnit.MINUTES.toMillis(10);
+
+    private TestEngine engine;
+
+    @Before
+    public void setUp() {
+        TestEnquiry.install();
+        this.engine = new TestEngine("test");
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 3, 1, 10, LONG_OPEN);
+        breaker.guard(() -> failedFuture(new IOException()));
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+    }
+
+    @Test
+    public void successResetsConsecutiveFailures() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 2, 1, 10, LONG_OPEN);
+        breaker.guard(() -> failedFuture(new IOException()));
+        breaker.guard(() -> CompletableFuture.completedFuture("result"));
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void opensOnErrorRateOnceWindowIsFull() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 100, 0.5, 4, LONG_OPEN);
+        breaker.guard(() -> CompletableFuture.completedFuture("result"));
+        breaker.guard(() -> failedFuture(new IOException()));
+        breaker.guard(() -> CompletableFuture.completedFuture("result"));
+        assertEquals(0, breaker.getErrorRate(), 0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void rejectsCallsWhileOpen() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 1, 1, 10, LONG_OPEN);
+        breaker.guard(() -> failedFuture(new IOException()));
+        final AtomicBoolean called = new AtomicBoolean();
+        final CompletableFuture<String> future = breaker.guard(() -> {
+            called.set(true);
+            return CompletableFuture.completedFuture("result");
+        });
+        assertFalse(called.get());
+        assertTrue(causeOf(future) instanceof CircuitOpenException);
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void ignoresCallsRejectedBeforeUpstream() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 1, 0.1, 1, LONG_OPEN);
+        breaker.guard(() -> failedFuture(new SearchBusyException(this.engine)));
+        breaker.guard(() -> failedFuture(new RateLimitedException(SearchFailureEvent.Reason.RATE_LIMITED, "limited")));
+        final CompletableFuture<String> future = breaker.guard(() -> {
+            throw new RejectedExecutionException();
+        });
+        assertTrue(causeOf(future) instanceof RejectedExecutionException);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getErrorRate(), 0);
+    }
+
+    @Test
+    public void closesAfterSuccessfulProbe() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 1, 1, 10, 0);
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        final CompletableFuture<String> probe = new CompletableFuture<>();
+        breaker.guard(() -> probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        // Only the probe is let through until it completes
+        final CompletableFuture<String> rejected = breaker.guard(() -> {
+            fail("Called while the probe is in flight");
+            return null;
+        });
+        assertTrue(causeOf(rejected) instanceof CircuitOpenException);
+        probe.complete("result");
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void reopensAfterFailedProbe() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 1, 1, 10, 0);
+        breaker.guard(() -> failedFuture(new IOException()));
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenedCount());
+    }
+
+    @Test
+    public void rejectedProbeLetsNextCallProbe() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 1, 1, 10, 0);
+        breaker.guard(() -> failedFuture(new IOException()));
+        breaker.guard(() -> failedFuture(new SearchBusyException(this.engine)));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+        final CompletableFuture<String> probe = breaker.guard(() -> CompletableFuture.completedFuture("result"));
+        assertNull(causeOf(probe));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void lateFailuresDoNotReopen() {
+        final CircuitBreaker breaker = new CircuitBreaker(this.engine, 1, 1, 10, LONG_OPEN);
+        final CompletableFuture<String> late = new CompletableFuture<>();
+        breaker.guard(() -> late);
+        breaker.guard(() -> failedFuture(new IOException()));
+        assertEquals(1, breaker.getOpenedCount());
+        late.completeExceptionally(new IOException());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+    }
+}
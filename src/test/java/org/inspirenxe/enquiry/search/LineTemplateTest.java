@@ -0,0 +1,57 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import static org.junit.Assert.assertEquals;
+
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.junit.Test;
+
+public class LineTemplateTest {
+
+    @Test
+    public void writesCodesOfFormatAndEngineWithSectionSign() {
+        final LineTemplate template = LineTemplate.compile("&f${resultNumber}. ${engine} &d${resultTitle} & more");
+        assertEquals("§f1. §9Bing §dRedstone & more", template.format("&9Bing", "redstone", 1, result("Redstone", null)));
+    }
+
+    @Test
+    public void doesNotFormatQueryOrResult() {
+        final LineTemplate template = LineTemplate.compile("&d${resultTitle} &7${resultDescription} &e${query}");
+        // Section signs are left out of values rather than starting codes
+        assertEquals("§d&kHidden r §7&4Red 4Dark §e&lloud", template.format("Test", "&lloud", 1, result("&kHidden §r", "&4Red §4Dark")));
+    }
+
+    @Test
+    public void showsUrlWithoutTitle() {
+        assertEquals("§dhttps://example.com", LineTemplate.compile("&d${resultTitle}").format("Test", "redstone", 1,
+                result(null, null)));
+    }
+
+    private static SearchResult result(String title, String description) {
+        return SearchResults.builder(1).add(title, description, "https://example.com").build().get(0);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.common.collect.Lists;
+import org.inspirenxe.enquiry.api.engine.SearchResult;
+import org.inspirenxe.enquiry.api.engine.SearchResults;
+import org.junit.Test;
+
+import java.util.List;
+
+public class MetaSearchTaskTest {
+
+    @Test
+    public void ranksResultsFoundByMoreEnginesFirst() {
+        final List<SearchResult> fused = MetaSearchTask.fuse(Lists.newArrayList(ranking("https://a.com", "https://b.com"),
+                ranking("https://b.com", "https://c.com")), 10);
+        assertEquals(urls("https://b.com", "https://a.com", "https://c.com"), urls(fused));
+    }
+
+    @Test
+    public void breaksTiesByFirstSeen() {
+        for (int i = 0; i < 10; i++) {
+            final List<SearchResult> fused = MetaSearchTask.fuse(Lists.newArrayList(ranking("https://z.com/" + i, "https://y.com"),
+                    ranking("https://x.com/" + i, "https://w.com")), 10);
+            assertEquals(urls("https://z.com/" + i, "https://x.com/" + i, "https://y.com", "https://w.com"), urls(fused));
+        }
+    }
+
+    @Test
+    public void mergesUrlsDifferingInSchemeHostCaseAndTrailingSlash() {
+        assertEquals(MetaSearchTask.canonicalUrl("https://example.com/wiki/Redstone"),
+                MetaSearchTask.canonicalUrl("HTTP://WWW.Example.COM/wiki/Redstone/#Uses"));
+    }
+
+    @Test
+    public void keepsCaseOfPathAndQuery() {
+        assertNotEquals(MetaSearchTask.canonicalUrl("https://example.com/wiki/Redstone"),
+                MetaSearchTask.canonicalUrl("https://example.com/wiki/redstone"));
+        assertNotEquals(MetaSearchTask.canonicalUrl("https://youtu.be/watch?v=dQw4w9WgXcQ"),
+                MetaSearchTask.canonicalUrl("https://youtu.be/watch?v=dqw4w9wgxcq"));
+    }
+
+    private static List<? extends SearchResult> ranking(String... urls) {
+        final SearchResults.Builder results = SearchResults.builder(urls.length);
+        for (String url : urls) {
+            results.add("Title", null, url);
+        }
+        return results.build();
+    }
+
+    private static List<String> urls(String... urls) {
+        return Lists.newArrayList(urls);
+    }
+
+    private static List<String> urls(List<? extends SearchResult> results) {
+        final List<String> urls = Lists.newArrayList();
+        for (SearchResult result : results) {
+            urls.add(result.getUrl());
+        }
+        return urls;
+    }
+}
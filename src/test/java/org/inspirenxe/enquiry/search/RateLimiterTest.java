@@ -0,0 +1,115 @@
+/**
+ * This file is part of Enquiry, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) InspireNXE <http://github.com/InspireNXE/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.inspirenxe.enquiry.search;
+
+import static org.inspirenxe.enquiry.TestEngine.causeOf;
+import static org.inspirenxe.enquiry.TestEngine.failedFuture;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.inspirenxe.enquiry.TestEngine;
+import org.inspirenxe.enquiry.TestEnquiry;
+import org.inspirenxe.enquiry.api.event.SearchFailureEvent;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RateLimiterTest {
+
+    // A token every 1000 seconds, no token is added back while a test runs
+    private static final double SLOW = 0.001;
+
+    private TestEngine engine;
+
+    @Before
+    public void setUp() {
+        TestEnquiry.install();
+        this.engine = new TestEngine("test");
+    }
+
+    @Test
+    public void limitsToBurst() {
+        final RateLimiter limiter = new RateLimiter(this.engine, SLOW, 2, 0);
+        assertNull(causeOf(limiter.guard(() -> CompletableFuture.completedFuture("result"))));
+        assertNull(causeOf(limiter.guard(() -> CompletableFuture.completedFuture("result"))));
+        final AtomicBoolean called = new AtomicBoolean();
+        final CompletableFuture<String> limited = limiter.guard(() -> {
+            called.set(true);
+            return CompletableFuture.completedFuture("result");
+        });
+        assertFalse(called.get());
+        assertReason(SearchFailureEvent.Reason.RATE_LIMITED, limited);
+        assertEquals(1, limiter.getLimitedCount());
+    }
+
+    @Test
+    public void limitsToDailyQuota() {
+        final RateLimiter limiter = new RateLimiter(this.engine, 0, 1, 2);
+        limiter.guard(() -> CompletableFuture.completedFuture("result"));
+        limiter.guard(() -> failedFuture(new IOException()));
+        assertEquals(2, limiter.getQuotaUsed());
+        assertReason(SearchFailureEvent.Reason.QUOTA_EXCEEDED, limiter.guard(() -> CompletableFuture.completedFuture("result")));
+        assertEquals(2, limiter.getQuotaUsed());
+    }
+
+    @Test
+    public void refundsCallsRejectedBeforeUpstream() {
+        final RateLimiter limiter = new RateLimiter(this.engine, SLOW, 1, 5);
+        limiter.guard(() -> failedFuture(new CircuitOpenException(this.engine)));
+        limiter.guard(() -> failedFuture(new SearchBusyException(this.engine)));
+        try {
+            limiter.guard(() -> {
+                throw new RejectedExecutionException();
+            });
+            fail("The rejection was not rethrown");
+        } catch (RejectedExecutionException expected) {
+            // The call was never made
+        }
+        assertEquals(0, limiter.getQuotaUsed());
+        assertNull(causeOf(limiter.guard(() -> CompletableFuture.completedFuture("result"))));
+        assertEquals(1, limiter.getQuotaUsed());
+    }
+
+    @Test
+    public void keepsTokenOfFailedUpstreamCall() {
+        final RateLimiter limiter = new RateLimiter(this.engine, SLOW, 1, 5);
+        limiter.guard(() -> failedFuture(new IOException()));
+        assertEquals(1, limiter.getQuotaUsed());
+        assertReason(SearchFailureEvent.Reason.RATE_LIMITED, limiter.guard(() -> CompletableFuture.completedFuture("result")));
+    }
+
+    private static void assertReason(SearchFailureEvent.Reason reason, CompletableFuture<?> future) {
+        final Throwable cause = causeOf(future);
+        assertTrue(cause instanceof RateLimitedException);
+        assertEquals(reason, ((RateLimitedException) cause).getReason());
+    }
+}